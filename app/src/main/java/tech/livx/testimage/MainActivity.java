@@ -26,6 +26,8 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        ImagePicker.prewarm(this, 800, 800);
+
         imagePicker = new ImagePicker(this,"Image Test",
                 new OutputBitmap() {
                     @Override
@@ -96,4 +98,11 @@ public class MainActivity extends AppCompatActivity {
 
         imagePicker.onSavedInstanceState(outState);
     }
+
+    @Override
+    protected void onDestroy() {
+        imagePicker.onDestroy();
+
+        super.onDestroy();
+    }
 }
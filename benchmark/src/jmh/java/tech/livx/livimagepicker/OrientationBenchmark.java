@@ -0,0 +1,27 @@
+package tech.livx.livimagepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping Exif orientations to rotations, everything worked out from the tag of one pick
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrientationBenchmark {
+
+    @Benchmark
+    public void allOrientations(Blackhole blackhole) {
+        for (int orientation = 1; orientation <= 8; orientation++) {
+            int degrees = PickerMath.getOrientationDegrees(orientation);
+            blackhole.consume(PickerMath.isPlainRotation(orientation));
+            blackhole.consume(PickerMath.isTurned(degrees + 90));
+            blackhole.consume(PickerMath.getOrientation(degrees + 270));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package tech.livx.livimagepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per pick cost of the size and sampling math. Run with ./gradlew :benchmark:jmh, the gc profiler adds the
+ * allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PickerMathBenchmark {
+    @Param({"320x240", "1600x1200", "4032x3024", "12000x2000"})
+    public String source;
+
+    @Param({"1080x1080", "200x200"})
+    public String target;
+
+    private int width;
+    private int height;
+    private float targetWidth;
+    private float targetHeight;
+
+    @Setup
+    public void setUp() {
+        String[] sourceSize = source.split("x");
+        width = Integer.parseInt(sourceSize[0]);
+        height = Integer.parseInt(sourceSize[1]);
+
+        String[] targetSize = target.split("x");
+        targetWidth = Float.parseFloat(targetSize[0]);
+        targetHeight = Float.parseFloat(targetSize[1]);
+    }
+
+    @Benchmark
+    public int sampleSize() {
+        int[] size = PickerMath.getTargetSize(width, height, targetWidth, targetHeight, false);
+        return PickerMath.getSampleSize(width, height, size[0], size[1]);
+    }
+
+    @Benchmark
+    public int[] fitSize() {
+        return PickerMath.getTargetSize(width, height, targetWidth, targetHeight, false);
+    }
+
+    @Benchmark
+    public int[] coverSize() {
+        return PickerMath.getTargetSize(width, height, targetWidth, targetHeight, true);
+    }
+
+    @Benchmark
+    public int[] cropRegion() {
+        return PickerMath.getCropRegion(width, height, targetWidth, targetHeight);
+    }
+}
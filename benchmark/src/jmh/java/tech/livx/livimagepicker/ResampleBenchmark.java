@@ -0,0 +1,64 @@
+package tech.livx.livimagepicker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of the striped resampler with the number of threads: a 12 megapixel sampled decode turned into an
+ * exact 1080x1080 output with a quarter turn, as Resampler does it after the decode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResampleBenchmark {
+    private static final int SOURCE_WIDTH = 4032;
+    private static final int SOURCE_HEIGHT = 3024;
+    private static final int TARGET = 1080;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"BOX", "BILINEAR", "LANCZOS"})
+    public ResampleFilter filter;
+
+    private ExecutorService helpers;
+    private int[] pixels;
+    private ResampleKernel.Weights columns;
+    private ResampleKernel.Weights rows;
+
+    @Setup
+    public void setUp() {
+        //The calling thread works on stripes too
+        helpers = Executors.newFixedThreadPool(Math.max(1, threads - 1));
+
+        float scale = PickerMath.getCoverScale(SOURCE_WIDTH, SOURCE_HEIGHT, TARGET, TARGET);
+        columns = new ResampleKernel.Weights(filter, SOURCE_WIDTH, TARGET, scale, (SOURCE_WIDTH - TARGET / scale) / 2);
+        rows = new ResampleKernel.Weights(filter, SOURCE_HEIGHT, TARGET, scale, (SOURCE_HEIGHT - TARGET / scale) / 2);
+
+        pixels = new int[SOURCE_WIDTH * (rows.max - rows.min)];
+        //Noise, so no filter gets away with flat areas
+        for (int i = 0; i < pixels.length; i++)
+            pixels[i] = 0xff000000 | (i * 0x9e3779b1) >>> 8;
+    }
+
+    @TearDown
+    public void tearDown() {
+        helpers.shutdown();
+    }
+
+    @Benchmark
+    public int[] resample() throws InterruptedException {
+        return ResampleKernel.resample(pixels, SOURCE_WIDTH, columns, rows, 90, helpers, threads);
+    }
+}
@@ -0,0 +1,268 @@
+package tech.livx.livimagepicker.benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Writes the fixture corpus used by the end to end pick benchmark: every format, size class and Exif
+ * orientation. Pixels are stored so that each image shows upright once its orientation is applied, like a
+ * camera held at an angle. Run with the corpus directory as the only argument, see the generateCorpus task.
+ */
+public final class CorpusGenerator {
+    static final String[] FORMATS = {"jpeg", "png", "webp"};
+    static final String[] SIZE_NAMES = {"small", "medium", "large"};
+    static final int[][] SIZES = {{320, 240}, {1600, 1200}, {3264, 2448}};
+
+    private CorpusGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1)
+            throw new IllegalArgumentException("Usage: CorpusGenerator <corpus directory>");
+
+        File root = new File(args[0]);
+        for (String format : FORMATS) {
+            File directory = new File(root, format);
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Unable to create " + directory);
+
+            for (int size = 0; size < SIZES.length; size++) {
+                BufferedImage upright = draw(SIZES[size][0], SIZES[size][1], format + " " + SIZE_NAMES[size]);
+
+                for (int orientation = 1; orientation <= 8; orientation++) {
+                    byte[] bytes = encode(store(upright, orientation), format, orientation);
+                    write(new File(directory, SIZE_NAMES[size] + "_" + orientation + "." + extension(format)), bytes);
+                }
+            }
+        }
+    }
+
+    static String extension(String format) {
+        return "jpeg".equals(format) ? "jpg" : format;
+    }
+
+    /**
+     * Scene with smooth areas, hard edges and text, and an F in the top left corner to check orientation
+     */
+    private static BufferedImage draw(int width, int height, String label) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        graphics.setPaint(new GradientPaint(0, 0, new Color(0x2E6FB7), width, height, new Color(0xF2C14E)));
+        graphics.fillRect(0, 0, width, height);
+
+        int unit = Math.min(width, height) / 12;
+        graphics.setColor(new Color(0x3A7D44));
+        graphics.fillOval(width / 2, height / 3, unit * 5, unit * 5);
+        graphics.setColor(new Color(0xD64550));
+        graphics.setStroke(new BasicStroke(Math.max(1, unit / 4f)));
+        for (int i = 0; i < 6; i++)
+            graphics.drawLine(i * width / 6, height, width / 2 + i * unit, height / 2);
+
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(unit, unit, unit, unit * 4);
+        graphics.fillRect(unit, unit, unit * 3, unit);
+        graphics.fillRect(unit, unit * 5 / 2, unit * 2, unit);
+
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(10, unit)));
+        graphics.drawString(label + " " + width + "x" + height, unit, height - unit);
+        graphics.dispose();
+
+        return image;
+    }
+
+    /**
+     * Apply the inverse of an Exif orientation, so applying the orientation gives the upright image back
+     */
+    private static BufferedImage store(BufferedImage upright, int orientation) {
+        //Rotations by 90 and 270 are each other's inverse, the other orientations are their own
+        int inverse = orientation == 6 ? 8 : orientation == 8 ? 6 : orientation;
+
+        int w = upright.getWidth();
+        int h = upright.getHeight();
+        boolean turned = inverse >= 5;
+        BufferedImage stored = new BufferedImage(turned ? h : w, turned ? w : h, BufferedImage.TYPE_INT_RGB);
+
+        for (int y = 0; y < stored.getHeight(); y++) {
+            for (int x = 0; x < stored.getWidth(); x++) {
+                int sx;
+                int sy;
+                switch (inverse) {
+                    case 2: sx = w - 1 - x; sy = y; break;
+                    case 3: sx = w - 1 - x; sy = h - 1 - y; break;
+                    case 4: sx = x; sy = h - 1 - y; break;
+                    case 5: sx = y; sy = x; break;
+                    case 6: sx = y; sy = h - 1 - x; break;
+                    case 7: sx = w - 1 - y; sy = h - 1 - x; break;
+                    case 8: sx = w - 1 - y; sy = x; break;
+                    default: sx = x; sy = y; break;
+                }
+                stored.setRGB(x, y, upright.getRGB(sx, sy));
+            }
+        }
+
+        return stored;
+    }
+
+    private static byte[] encode(BufferedImage image, String format, int orientation) throws IOException {
+        byte[] tiff = tiff(orientation);
+
+        if ("jpeg".equals(format))
+            return jpegWithExif(write(image, "jpeg", 0.85f), tiff);
+
+        if ("png".equals(format))
+            return pngWithExif(write(image, "png", -1), tiff);
+
+        return webpWithExif(write(image, "webp", 0.85f), image.getWidth(), image.getHeight(), tiff);
+    }
+
+    private static byte[] write(BufferedImage image, String format, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext())
+            throw new IOException("No writer for " + format);
+
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (quality >= 0 && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionTypes() != null && param.getCompressionType() == null)
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            param.setCompressionQuality(quality);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream stream = new MemoryCacheImageOutputStream(out);
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            stream.close();
+            writer.dispose();
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Big endian TIFF block with the orientation as its only entry
+     */
+    private static byte[] tiff(int orientation) {
+        return new byte[]{
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+    }
+
+    private static byte[] jpegWithExif(byte[] jpeg, byte[] tiff) {
+        int length = 2 + 6 + tiff.length;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length + length + 2);
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(new byte[]{'E', 'x', 'i', 'f', 0, 0}, 0, 6);
+        out.write(tiff, 0, tiff.length);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    /**
+     * Add an eXIf chunk right after IHDR
+     */
+    private static byte[] pngWithExif(byte[] png, byte[] tiff) {
+        //Signature plus the IHDR chunk
+        int ihdrEnd = 8 + 4 + 4 + 13 + 4;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(png.length + tiff.length + 12);
+        out.write(png, 0, ihdrEnd);
+        writeInt(out, tiff.length, true);
+
+        byte[] type = {'e', 'X', 'I', 'f'};
+        out.write(type, 0, 4);
+        out.write(tiff, 0, tiff.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(tiff);
+        writeInt(out, (int) crc.getValue(), true);
+
+        out.write(png, ihdrEnd, png.length - ihdrEnd);
+        return out.toByteArray();
+    }
+
+    /**
+     * Turn a simple WebP into the extended format with an EXIF chunk
+     */
+    private static byte[] webpWithExif(byte[] webp, int width, int height, byte[] tiff) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(webp.length + tiff.length + 32);
+        body.write(new byte[]{'W', 'E', 'B', 'P', 'V', 'P', '8', 'X'}, 0, 8);
+        writeInt(body, 10, false);
+        //EXIF present flag, then reserved bytes and the canvas size minus one in 24 bits
+        body.write(0x08);
+        body.write(0);
+        body.write(0);
+        body.write(0);
+        writeInt24(body, width - 1);
+        writeInt24(body, height - 1);
+
+        //Image chunks of the simple file, after RIFF size and WEBP
+        body.write(webp, 12, webp.length - 12);
+
+        body.write(new byte[]{'E', 'X', 'I', 'F'}, 0, 4);
+        writeInt(body, tiff.length, false);
+        body.write(tiff, 0, tiff.length);
+        if (tiff.length % 2 != 0)
+            body.write(0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 8);
+        out.write(new byte[]{'R', 'I', 'F', 'F'}, 0, 4);
+        writeInt(out, body.size(), false);
+        out.write(body.toByteArray(), 0, body.size());
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value, boolean bigEndian) {
+        for (int i = 0; i < 4; i++) {
+            int shift = bigEndian ? (3 - i) * 8 : i * 8;
+            out.write((value >> shift) & 0xFF);
+        }
+    }
+
+    private static void writeInt24(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+        out.write((value >> 16) & 0xFF);
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
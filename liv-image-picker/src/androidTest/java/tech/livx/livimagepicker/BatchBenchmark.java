@@ -0,0 +1,102 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Multi select batch of eight 1600x1200 JPEGs decoded to 1080x1080, one at a time and on the default pool.
+ * The speedup is the ratio of the two timings, run on a device:
+ * ./gradlew :liv-image-picker:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=tech.livx.livimagepicker.BatchBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private List<Uri> uris;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        uris = DeviceCorpus.uris(context, "jpeg", "medium");
+    }
+
+    @Test
+    public void serialBatch() throws Exception {
+        measure(PickerExecutors.serial(PickerExecutors.getDefault()));
+    }
+
+    @Test
+    public void parallelBatch() throws Exception {
+        measure(PickerExecutors.getDefault());
+    }
+
+    private void measure(Executor executor) throws Exception {
+        Decoder decoder = new Decoder(context, 1080, 1080, false);
+        BenchmarkState state = benchmarkRule.getState();
+
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            DeviceCorpus.clearCaches();
+            state.resumeTiming();
+
+            decodeBatch(decoder, executor);
+        }
+    }
+
+    private void decodeBatch(Decoder decoder, Executor executor) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final int[] count = new int[1];
+
+        final BatchDecode batch = new BatchDecode(decoder, executor, uris, new OutputBitmap() {
+            @Override
+            public void onImageLoaded(Uri uri, Bitmap image) {
+                image.recycle();
+            }
+
+            @Override
+            public void onImageLoadFailed() {
+            }
+
+            @Override
+            public void onPermissionsDenied() {
+            }
+        }, new BatchListener() {
+            @Override
+            public void onBatchComplete(List<Uri> loaded, Map<Uri, Throwable> failed) {
+                count[0] = loaded.size();
+                done.countDown();
+            }
+        }, null);
+
+        //Batches are scheduled on the main thread
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                batch.start();
+            }
+        });
+
+        done.await();
+        assertEquals(uris.size(), count[0]);
+    }
+}
@@ -0,0 +1,101 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fixture corpus of src/test/resources/corpus on the device, copied once to the cache directory so the
+ * benchmarks decode real files with the platform codecs, and the helpers the device benchmarks share.
+ */
+final class DeviceCorpus {
+    static final String TAG = "LivImagePickerBenchmark";
+
+    //Eight Exif orientations per size class
+    private static final int ORIENTATIONS = 8;
+
+    private DeviceCorpus() {
+    }
+
+    /**
+     * @param format Corpus directory, jpeg, png or webp
+     * @param size   Size class, small (320x240), medium (1600x1200) or large (3264x2448)
+     * @return File Uris of every orientation of the size class
+     */
+    static List<Uri> uris(Context context, String format, String size) throws IOException {
+        List<Uri> uris = new ArrayList<>(ORIENTATIONS);
+        for (int orientation = 1; orientation <= ORIENTATIONS; orientation++)
+            uris.add(Uri.fromFile(file(context, format, size + "_" + orientation)));
+
+        return uris;
+    }
+
+    /**
+     * @param format Corpus directory, jpeg, png or webp
+     * @param name   Fixture name without extension, e.g. large_1
+     * @return Fixture copied to the cache directory
+     */
+    static File file(Context context, String format, String name) throws IOException {
+        String path = "corpus/" + format + "/" + name + "." + ("jpeg".equals(format) ? "jpg" : format);
+
+        File file = new File(context.getCacheDir(), path);
+        if (file.exists())
+            return file;
+
+        InputStream input = DeviceCorpus.class.getClassLoader().getResourceAsStream(path);
+        if (input == null)
+            throw new IOException("Missing fixture " + path);
+
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs())
+            throw new IOException("Unable to create " + file.getParent());
+
+        OutputStream output = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                output.write(buffer, 0, read);
+        } finally {
+            output.close();
+            input.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * Empty the caches so each run decodes from the source
+     */
+    static void clearCaches() {
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        Fingerprint.clear();
+    }
+
+    /**
+     * @return Bytes allocated on the Java heap by the process so far, -1 before Marshmallow
+     */
+    static long getAllocatedBytes() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M)
+            return -1;
+
+        return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+    }
+
+    /**
+     * Log a figure the timing of BenchmarkRule doesn't cover, e.g. memory or encode passes
+     */
+    static void report(String benchmark, String metric, long value) {
+        Log.i(TAG, benchmark + " " + metric + ": " + value);
+    }
+}
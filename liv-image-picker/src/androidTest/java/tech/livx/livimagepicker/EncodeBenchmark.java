@@ -0,0 +1,103 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Base64 encode of a 1600x1200 image in each format, OutputBase64 compressing straight into the encoder
+ * against the old compress, toByteArray and encodeToString copies. Java heap allocation of one encode is
+ * logged next to the timings, from Marshmallow on.
+ */
+@RunWith(Parameterized.class)
+public class EncodeBenchmark {
+    private static final int QUALITY = 90;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Bitmap.CompressFormat format;
+    private Bitmap bitmap;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> formats() {
+        return Arrays.asList(new Object[][]{
+                {Bitmap.CompressFormat.JPEG}, {Bitmap.CompressFormat.PNG}, {Bitmap.CompressFormat.WEBP}});
+    }
+
+    public EncodeBenchmark(Bitmap.CompressFormat format) {
+        this.format = format;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        File file = DeviceCorpus.file(InstrumentationRegistry.getInstrumentation().getTargetContext(), "jpeg", "medium_1");
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    @Test
+    public void streamedEncode() throws Exception {
+        touch();
+        String expected = encodeCopied();
+
+        long allocated = DeviceCorpus.getAllocatedBytes();
+        String string = OutputBase64.encode(bitmap, format, QUALITY);
+        DeviceCorpus.report("streamedEncode " + format, "allocated bytes", DeviceCorpus.getAllocatedBytes() - allocated);
+        DeviceCorpus.report("streamedEncode " + format, "characters", string.length());
+        assertEquals(expected, string);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            //A changed bitmap isn't served from the memoised encode
+            state.pauseTiming();
+            touch();
+            state.resumeTiming();
+
+            OutputBase64.encode(bitmap, format, QUALITY);
+        }
+    }
+
+    @Test
+    public void copiedEncode() throws Exception {
+        long allocated = DeviceCorpus.getAllocatedBytes();
+        encodeCopied();
+        DeviceCorpus.report("copiedEncode " + format, "allocated bytes", DeviceCorpus.getAllocatedBytes() - allocated);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            encodeCopied();
+    }
+
+    /**
+     * The encode before OutputBase64 streamed: compressed bytes, a copy of them, then the String
+     */
+    private String encodeCopied() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bitmap.compress(format, QUALITY, stream);
+        return Base64.encodeToString(stream.toByteArray(), Base64.NO_WRAP);
+    }
+
+    private void touch() {
+        bitmap.setPixel(0, 0, bitmap.getPixel(0, 0) ^ 1);
+    }
+}
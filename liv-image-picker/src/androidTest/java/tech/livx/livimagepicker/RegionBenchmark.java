@@ -0,0 +1,108 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+/**
+ * Exact 1080x1080 crop of a 3264x2448 JPEG, the two pre-P strategies of the decoder side by side: decoding
+ * only the crop region through BitmapRegionDecoder, and decoding the full frame at the same sample size and
+ * cropping it afterwards. The peak pixel memory of each is logged next to the timings.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RegionBenchmark {
+    private static final int TARGET = 1080;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private String path;
+    private Rect region;
+    private int regionSampleSize;
+    private int frameSampleSize;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = DeviceCorpus.file(InstrumentationRegistry.getInstrumentation().getTargetContext(), "jpeg", "large_1");
+        path = file.getPath();
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, bounds);
+
+        //Sample sizes as the decoder picks them for each path
+        int[] crop = PickerMath.getCropRegion(bounds.outWidth, bounds.outHeight, TARGET, TARGET);
+        region = new Rect(crop[0], crop[1], crop[2], crop[3]);
+        regionSampleSize = PickerMath.getSampleSize(region.width(), region.height(), TARGET, TARGET);
+
+        int[] cover = PickerMath.getTargetSize(bounds.outWidth, bounds.outHeight, TARGET, TARGET, true);
+        frameSampleSize = PickerMath.getSampleSize(bounds.outWidth, bounds.outHeight, cover[0], cover[1]);
+    }
+
+    @Test
+    public void regionDecode() throws Exception {
+        DeviceCorpus.report("regionDecode", "peak pixel bytes", decodeRegion(true));
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            decodeRegion(false);
+    }
+
+    @Test
+    public void fullFrameDecode() throws Exception {
+        DeviceCorpus.report("fullFrameDecode", "peak pixel bytes", decodeFullFrame(true));
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            decodeFullFrame(false);
+    }
+
+    /**
+     * @return Bytes of the decoded region
+     */
+    private long decodeRegion(boolean measure) throws Exception {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = regionSampleSize;
+
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(path, false);
+        try {
+            Bitmap bitmap = decoder.decodeRegion(region, options);
+            long bytes = measure ? bitmap.getByteCount() : 0;
+            bitmap.recycle();
+            return bytes;
+        } finally {
+            decoder.recycle();
+        }
+    }
+
+    /**
+     * @return Bytes of the full frame and the crop, both held while cropping
+     */
+    private long decodeFullFrame(boolean measure) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = frameSampleSize;
+
+        Bitmap frame = BitmapFactory.decodeFile(path, options);
+        Bitmap crop = Bitmap.createBitmap(frame, region.left / frameSampleSize, region.top / frameSampleSize,
+                region.width() / frameSampleSize, region.height() / frameSampleSize);
+
+        long bytes = measure ? frame.getByteCount() + (crop != frame ? crop.getByteCount() : 0) : 0;
+        if (crop != frame)
+            crop.recycle();
+        frame.recycle();
+        return bytes;
+    }
+}
@@ -0,0 +1,114 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * A 3264x2448 JPEG fitted to 1080x1080, the decoder scaling to the target size against the old path of a
+ * sampled decode followed by a Canvas redraw. Pixel memory held at the end and Java heap allocation per pick
+ * are logged next to the timings, the heap figure from Marshmallow on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScaleBenchmark {
+    private static final int TARGET = 1080;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        file = DeviceCorpus.file(context, "jpeg", "large_1");
+    }
+
+    @Test
+    public void decoderScale() throws Exception {
+        Decoder decoder = new Decoder(context, TARGET, TARGET, false);
+        Uri uri = Uri.fromFile(file);
+
+        DeviceCorpus.clearCaches();
+        long allocated = DeviceCorpus.getAllocatedBytes();
+        DeviceCorpus.report("decoderScale", "pixel bytes", decodeScaled(decoder, uri));
+        DeviceCorpus.report("decoderScale", "allocated bytes", DeviceCorpus.getAllocatedBytes() - allocated);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            DeviceCorpus.clearCaches();
+            state.resumeTiming();
+
+            decodeScaled(decoder, uri);
+        }
+    }
+
+    @Test
+    public void canvasScale() throws Exception {
+        long allocated = DeviceCorpus.getAllocatedBytes();
+        DeviceCorpus.report("canvasScale", "pixel bytes", drawScaled());
+        DeviceCorpus.report("canvasScale", "allocated bytes", DeviceCorpus.getAllocatedBytes() - allocated);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            drawScaled();
+    }
+
+    /**
+     * @return Bytes of the decoded bitmaps
+     */
+    private static long decodeScaled(Decoder decoder, Uri uri) throws Exception {
+        Decoded decoded = decoder.decode(uri, 0, null, null, null, null);
+        assertNotNull(decoded);
+
+        long bytes = decoded.dest.getByteCount();
+        if (decoded.source != null && decoded.source != decoded.dest) {
+            bytes += decoded.source.getByteCount();
+            decoded.source.recycle();
+        }
+
+        decoded.dest.recycle();
+        return bytes;
+    }
+
+    /**
+     * The path before the decoder scaled: power of two sample, then a filtered Canvas draw to the target
+     *
+     * @return Bytes of the sampled and the drawn bitmap, both held while drawing
+     */
+    private long drawScaled() {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+
+        int[] target = PickerMath.getTargetSize(bounds.outWidth, bounds.outHeight, TARGET, TARGET, false);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = PickerMath.getSampleSize(bounds.outWidth, bounds.outHeight, target[0], target[1]);
+
+        Bitmap sampled = BitmapFactory.decodeFile(file.getPath(), options);
+        Bitmap scaled = Bitmap.createScaledBitmap(sampled, target[0], target[1], true);
+
+        long bytes = sampled.getByteCount() + (scaled != sampled ? scaled.getByteCount() : 0);
+        if (scaled != sampled)
+            scaled.recycle();
+        sampled.recycle();
+        return bytes;
+    }
+}
@@ -0,0 +1,133 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Quality search of OutputSized on the 1600x1200 corpus, per format and byte budget, against a plain one
+ * encode per step binary search over the same qualities. The encode passes and the quality found for every
+ * image of the corpus are logged next to the timings.
+ */
+@RunWith(Parameterized.class)
+public class SizedBenchmark {
+    private static final int MIN_QUALITY = 10;
+    private static final int MAX_QUALITY = 95;
+    private static final int ORIENTATIONS = 8;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Bitmap.CompressFormat format;
+    private final int maxBytes;
+    private final List<Bitmap> bitmaps = new ArrayList<>(ORIENTATIONS);
+
+    @Parameterized.Parameters(name = "{0} {1}")
+    public static List<Object[]> budgets() {
+        List<Object[]> budgets = new ArrayList<>();
+        for (Bitmap.CompressFormat format : new Bitmap.CompressFormat[]{Bitmap.CompressFormat.JPEG, Bitmap.CompressFormat.WEBP}) {
+            for (int maxBytes : new int[]{400 * 1024, 150 * 1024, 50 * 1024})
+                budgets.add(new Object[]{format, maxBytes});
+        }
+
+        return budgets;
+    }
+
+    public SizedBenchmark(Bitmap.CompressFormat format, int maxBytes) {
+        this.format = format;
+        this.maxBytes = maxBytes;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        for (int orientation = 1; orientation <= ORIENTATIONS; orientation++) {
+            File file = DeviceCorpus.file(context, "jpeg", "medium_" + orientation);
+            bitmaps.add(BitmapFactory.decodeFile(file.getPath()));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (Bitmap bitmap : bitmaps)
+            bitmap.recycle();
+    }
+
+    @Test
+    public void parallelSearch() throws Exception {
+        String benchmark = "parallelSearch " + format + " " + maxBytes;
+        for (int i = 0; i < bitmaps.size(); i++) {
+            OutputSized.Result result = OutputSized.encode(bitmaps.get(i), format, maxBytes, null);
+            assertTrue(result.getSize() <= maxBytes);
+
+            DeviceCorpus.report(benchmark + " medium_" + (i + 1), "passes", result.getPasses());
+            DeviceCorpus.report(benchmark + " medium_" + (i + 1), "quality", result.getQuality());
+            DeviceCorpus.report(benchmark + " medium_" + (i + 1), "width", result.getWidth());
+        }
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            OutputSized.encode(bitmaps.get(0), format, maxBytes, null);
+    }
+
+    @Test
+    public void binarySearch() throws Exception {
+        String benchmark = "binarySearch " + format + " " + maxBytes;
+        for (int i = 0; i < bitmaps.size(); i++) {
+            int[] search = binarySearch(bitmaps.get(i));
+
+            DeviceCorpus.report(benchmark + " medium_" + (i + 1), "passes", search[1]);
+            DeviceCorpus.report(benchmark + " medium_" + (i + 1), "quality", search[0]);
+        }
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning())
+            binarySearch(bitmaps.get(0));
+    }
+
+    /**
+     * One encode per step on the calling thread, halving the quality range each time
+     *
+     * @return Highest quality that fits or -1, and the number of encodes
+     */
+    private int[] binarySearch(Bitmap bitmap) {
+        int low = MIN_QUALITY;
+        int high = MAX_QUALITY;
+        int best = -1;
+        int passes = 0;
+
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            bitmap.compress(format, quality, stream);
+            passes++;
+
+            if (stream.size() <= maxBytes) {
+                best = quality;
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+
+        return new int[]{best, passes};
+    }
+}
@@ -0,0 +1,151 @@
+package tech.livx.livimagepicker;
+
+import android.net.Uri;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes a multi select pick with a bounded number of images in flight.
+ * Scheduling happens on the main thread, each finished image starts the next one.
+ */
+class BatchDecode {
+    private final Decoder decoder;
+    private final Executor executor;
+    private final Output output;
+    private final BatchListener listener;
+    private final MetricsListener metricsListener;
+    private final int parallelism;
+
+    private final Queue<Uri> pending;
+    private final List<ItemTask> running = new ArrayList<>();
+    private final List<Uri> loaded = new ArrayList<>();
+    private final Map<Uri, Throwable> failed = new LinkedHashMap<>();
+    private boolean cancelled;
+
+    /**
+     * Constructor
+     *
+     * @param decoder  Decoder configured with the target size
+     * @param executor Executor to decode on
+     * @param uris     Selected images
+     * @param output   Output each image is delivered to
+     * @param listener Completion callback, may be null
+     * @param metricsListener Per image metrics callback, may be null
+     */
+    BatchDecode(Decoder decoder, Executor executor, List<Uri> uris, Output output, BatchListener listener,
+                MetricsListener metricsListener) {
+        this.decoder = decoder;
+        this.executor = executor;
+        this.output = output;
+        this.listener = listener;
+        this.metricsListener = metricsListener;
+        this.pending = new ArrayDeque<>(uris);
+        this.parallelism = getParallelism(decoder.getMaxWidth(), decoder.getMaxHeight());
+    }
+
+    /**
+     * Number of images decoded at once, bounded by the cores and by how many worst case decodes
+     * fit in a quarter of the heap.
+     *
+     * @param maxWidth  Maximum width of the image
+     * @param maxHeight Maximum height of the image
+     * @return Images in flight
+     */
+    static int getParallelism(float maxWidth, float maxHeight) {
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        //Sampled source can be up to twice the target on each side, plus the destination
+        long perImage = (long) (maxWidth * maxHeight * 4) * 5;
+        long budget = Runtime.getRuntime().maxMemory() / 4;
+        long fit = perImage > 0 ? budget / perImage : cores;
+
+        return (int) Math.max(1, Math.min(cores, fit));
+    }
+
+    void start() {
+        for (int i = 0; i < parallelism; i++)
+            next();
+
+        if (running.isEmpty())
+            finish();
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (ItemTask task : running)
+            task.cancel();
+
+        running.clear();
+        pending.clear();
+    }
+
+    private void next() {
+        Uri uri = pending.poll();
+        if (uri == null)
+            return;
+
+        ItemTask task = new ItemTask(uri);
+        running.add(task);
+        task.execute(executor);
+    }
+
+    private void finish() {
+        if (listener != null)
+            listener.onBatchComplete(loaded, failed);
+    }
+
+    /**
+     * Task used to decode one selected image
+     */
+    private class ItemTask extends PickerTask<Decoded> {
+        private final Uri uri;
+        private Throwable error;
+
+        ItemTask(Uri uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        Decoded doInBackground() {
+            try {
+                return decoder.decode(uri, 0, null, this, null,
+                        metricsListener != null ? new PickMetrics(uri, metricsListener) : null);
+            } catch (Exception | OutOfMemoryError e) {
+                error = e;
+                return null;
+            }
+        }
+
+        @Override
+        void onPostExecute(Decoded decoded) {
+            if (cancelled)
+                return;
+
+            running.remove(this);
+
+            if (decoded == null) {
+                failed.put(uri, error != null ? error : new IOException("Unable to decode " + uri));
+                if (listener == null)
+                    output.onImageLoadFailed();
+            } else {
+                //Rotation isn't offered for multi select so the source isn't kept, unless it is the output itself
+                if (decoded.source != decoded.dest)
+                    BitmapPool.getInstance().put(decoded.source);
+
+                loaded.add(uri);
+                ImagePicker.process(output, decoded);
+            }
+
+            next();
+            if (running.isEmpty())
+                finish();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package tech.livx.livimagepicker;
+
+import android.net.Uri;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Callback for multi select picks. Each image is still delivered through Output as it finishes.
+ */
+public interface BatchListener {
+    /**
+     * Called on the main thread once every selected image has been decoded or failed
+     *
+     * @param loaded Uris delivered to the Output, in completion order
+     * @param failed Uris that could not be decoded with the reason
+     */
+    void onBatchComplete(List<Uri> loaded, Map<Uri, Throwable> failed);
+}
@@ -0,0 +1,114 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Process wide memory cache of decoded images with a byte budget and LRU eviction.
+ * Shared by all ImagePicker instances so configuration changes and repeated picks don't decode again.
+ */
+public final class BitmapCache {
+    private static BitmapCache instance;
+
+    private final LruCache<CacheKey, Bitmap> cache;
+    private int hitCount;
+    private int missCount;
+
+    private BitmapCache(int maxKilobytes) {
+        cache = new LruCache<CacheKey, Bitmap>(maxKilobytes) {
+            @Override
+            protected int sizeOf(CacheKey key, Bitmap bitmap) {
+                return Math.max(1, bitmap.getByteCount() / 1024);
+            }
+        };
+    }
+
+    /**
+     * @return Shared cache, sized to an eighth of the heap limit
+     */
+    public static synchronized BitmapCache getInstance() {
+        if (instance == null)
+            instance = new BitmapCache((int) (Runtime.getRuntime().maxMemory() / 1024 / 8));
+
+        return instance;
+    }
+
+    synchronized Bitmap get(CacheKey key) {
+        Bitmap bitmap = cache.get(key);
+
+        //Outputs are free to recycle what they are given
+        if (bitmap != null && bitmap.isRecycled()) {
+            cache.remove(key);
+            bitmap = null;
+        }
+
+        if (bitmap == null)
+            missCount++;
+        else
+            hitCount++;
+
+        return bitmap;
+    }
+
+    synchronized void put(CacheKey key, Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * @param bitmap Bitmap to look for
+     * @return true if the bitmap is cached under any key, it may still be handed out
+     */
+    synchronized boolean contains(Bitmap bitmap) {
+        if (bitmap == null)
+            return false;
+
+        for (Bitmap cached : cache.snapshot().values()) {
+            if (cached == bitmap)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Drop all cached images
+     */
+    public synchronized void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @return Number of lookups that returned a cached image
+     */
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Number of lookups that required a decode
+     */
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Number of images evicted to stay within budget
+     */
+    public synchronized int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return Current size of the cache in kilobytes
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return Budget of the cache in kilobytes
+     */
+    public synchronized int maxSize() {
+        return cache.maxSize();
+    }
+}
@@ -0,0 +1,211 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Process wide pool of mutable bitmaps reused for sampled decodes (inBitmap) and transform destinations.
+ * Bitmaps are bucketed by allocation size and the pool is capped in bytes, oldest bitmaps are evicted first.
+ * Reuse of a bitmap with a different size needs reconfigure so the pool is only active on API 19+.
+ */
+public final class BitmapPool {
+    //Don't hand out a bitmap that wastes more than this factor of its allocation
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private final LinkedList<Bitmap> order = new LinkedList<>();
+    private long size;
+
+    private int allocationCount;
+    private int reuseCount;
+    private long reusedBytes;
+    private int evictionCount;
+
+    private BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return Shared pool, sized to a sixteenth of the heap limit
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null)
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 16);
+
+        return instance;
+    }
+
+    /**
+     * Get a cleared bitmap, allocating one if nothing in the pool fits
+     *
+     * @param width  Width of the bitmap
+     * @param height Height of the bitmap
+     * @param config Pixel format
+     * @return Mutable, transparent bitmap
+     */
+    synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getReusable(width, height, config);
+        if (bitmap != null) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Get a pooled bitmap for use as BitmapFactory.Options.inBitmap. Contents are not cleared.
+     * A miss is counted as an allocation since the decoder will allocate instead.
+     *
+     * @param width  Width of the bitmap
+     * @param height Height of the bitmap
+     * @param config Pixel format
+     * @return Mutable bitmap reconfigured to the size or null if nothing fits
+     */
+    synchronized Bitmap getReusable(int width, int height, Bitmap.Config config) {
+        int required = width * height * getBytesPerPixel(config);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> entry = buckets.ceilingEntry(required);
+
+            if (entry != null && entry.getKey() <= required * MAX_SIZE_MULTIPLE) {
+                Bitmap bitmap = entry.getValue().poll();
+                if (entry.getValue().isEmpty())
+                    buckets.remove(entry.getKey());
+
+                order.remove(bitmap);
+                size -= entry.getKey();
+
+                bitmap.reconfigure(width, height, config);
+                reuseCount++;
+                reusedBytes += required;
+                return bitmap;
+            }
+        }
+
+        allocationCount++;
+        return null;
+    }
+
+    /**
+     * Return a bitmap that is no longer referenced anywhere. Bitmaps that can't be reused are recycled.
+     *
+     * @param bitmap Bitmap to pool
+     */
+    synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+
+        int bytes = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ? bitmap.getAllocationByteCount() : 0;
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT || !bitmap.isMutable() || bytes > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        ArrayDeque<Bitmap> bucket = buckets.get(bytes);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(bytes, bucket);
+        }
+
+        bucket.add(bitmap);
+        order.add(bitmap);
+        size += bytes;
+
+        trim();
+    }
+
+    /**
+     * Recycle all pooled bitmaps
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : order)
+            bitmap.recycle();
+
+        buckets.clear();
+        order.clear();
+        size = 0;
+    }
+
+    private void trim() {
+        Iterator<Bitmap> oldest = order.iterator();
+        while (size > maxBytes && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+
+            int bytes = bitmap.getAllocationByteCount();
+            ArrayDeque<Bitmap> bucket = buckets.get(bytes);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty())
+                buckets.remove(bytes);
+
+            size -= bytes;
+            evictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565)
+            return 2;
+
+        if (config == Bitmap.Config.ALPHA_8)
+            return 1;
+
+        //Includes the deprecated ARGB_4444, decoded as ARGB_8888 since KitKat
+        return 4;
+    }
+
+    /**
+     * @return Number of bitmaps that had to be newly allocated
+     */
+    public synchronized int getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * @return Number of bitmaps served from the pool
+     */
+    public synchronized int getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return Bytes of allocation avoided by reuse
+     */
+    public synchronized long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    /**
+     * @return Number of bitmaps evicted to stay within budget
+     */
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return Bytes currently held by the pool
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return Budget of the pool in bytes
+     */
+    public synchronized long maxSize() {
+        return maxBytes;
+    }
+}
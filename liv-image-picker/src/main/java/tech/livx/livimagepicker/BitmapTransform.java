@@ -0,0 +1,77 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * BitmapTransform class used to scale, rotate and crop a sampled source into the final image
+ */
+class BitmapTransform {
+
+    /**
+     * Draw the source into a new bitmap
+     *
+     * @param source    Sampled, unrotated source bitmap. Left untouched.
+     * @param maxWidth  Maximum width of the image
+     * @param maxHeight Maximum height of the image
+     * @param exact     Flag to specify if the image must be exactly maxWidth and maxHeight
+     * @param rotation  Total rotation in degrees (Exif and user rotation)
+     * @return Transformed bitmap, the source itself if nothing has to change, or null if the target size is empty
+     */
+    static Bitmap transform(Bitmap source, float maxWidth, float maxHeight, boolean exact, float rotation) {
+        float width = source.getWidth();
+        float height = source.getHeight();
+
+        //The decoder already produced the target, only a rotation needs a redraw
+        boolean rotated = PickerMath.normalizeRotation((int) rotation) != 0;
+        if (!rotated && (!exact || (width == (int) maxWidth && height == (int) maxHeight)))
+            return source;
+
+        //Calculate further required scaling
+        float scale = 1.0f;
+        if (exact) {
+            //Cover the target, the overflow is cropped evenly from both sides
+            scale = PickerMath.getCoverScale(width, height, maxWidth, maxHeight);
+        } else {
+            maxHeight = height;
+            maxWidth = width;
+        }
+
+        //Crashes sometimes by settings width and height to 0
+        if (maxWidth == 0 || maxHeight == 0)
+            return null;
+
+        float left = ((maxWidth - (scale * width)) / 2);
+        float top = ((maxHeight - (scale * height)) / 2);
+
+        //Create final bitmap
+        Matrix matrix = new Matrix();
+
+        //Apply scaling calculation
+        matrix.setTranslate(-(width / 2), -(height / 2));
+        matrix.postRotate(rotation);
+
+        //Keep the pixel format chosen for the decode
+        Bitmap.Config config = source.getConfig() == Bitmap.Config.RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        Bitmap dest;
+        if (PickerMath.isTurned((int) rotation)) {
+            dest = BitmapPool.getInstance().get((int) maxHeight, (int) maxWidth, config);
+            matrix.postTranslate(height / 2, width / 2);
+            matrix.postScale(scale, scale);
+            matrix.postTranslate(top, left);
+        } else {
+            dest = BitmapPool.getInstance().get((int) maxWidth, (int) maxHeight, config);
+            matrix.postTranslate(width / 2, height / 2);
+            matrix.postScale(scale, scale);
+            matrix.postTranslate(left, top);
+        }
+
+        //Draw final bitmap, filtered so downscales don't alias
+        Canvas canvas = new Canvas(dest);
+        canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return dest;
+    }
+}
@@ -0,0 +1,223 @@
+package tech.livx.livimagepicker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.LruCache;
+
+import java.io.File;
+
+/**
+ * CacheKey class used to identify a decoded image by its source and the requested output
+ */
+final class CacheKey {
+    private static final int MAX_SOURCES = 64;
+
+    //Source versions of content Uris already queried in this process, by Uri
+    private static final LruCache<String, CacheKey> sources = new LruCache<>(MAX_SOURCES);
+
+    private final String uri;
+    private final long lastModified;
+    private final long size;
+    private final float width;
+    private final float height;
+    private final boolean exact;
+    private final float minSide;
+    private final int rotation;
+    private final String config;
+    private final String filter;
+
+    private CacheKey(String uri, long lastModified, long size, float width, float height, boolean exact, float minSide,
+                     int rotation, String config, String filter) {
+        this.uri = uri;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        this.exact = exact;
+        this.minSide = minSide;
+        this.rotation = PickerMath.normalizeRotation(rotation);
+        this.config = config;
+        this.filter = filter;
+    }
+
+    /**
+     * Create a key for the given source. Looks up the last modified time and size of the source
+     * so an edited file with the same Uri doesn't hit a stale entry. Providers are queried once per Uri
+     * for the process, so cache hits don't wait on the provider. Files are checked every time.
+     *
+     * @param context  Application context
+     * @param uri      Source image Uri
+     * @param width    Maximum width of the image
+     * @param height   Maximum height of the image
+     * @param exact    Exact size flag
+     * @param minSide  Shortest side kept by a non exact output, 0 for none
+     * @param rotation User rotation in degrees, the Exif rotation is implied by the source
+     * @param config   Requested pixel format
+     * @param filter   Resample filter, null for the Canvas draw
+     * @return Cache key
+     */
+    static CacheKey create(Context context, Uri uri, float width, float height, boolean exact, float minSide, int rotation,
+                           Bitmap.Config config, ResampleFilter filter) {
+        String filterName = filter != null ? filter.name() : "CANVAS";
+        long lastModified = -1;
+        long size = -1;
+
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            File file = new File(uri.getPath());
+            lastModified = file.lastModified();
+            size = file.length();
+        } else {
+            CacheKey source = sources.get(uri.toString());
+            if (source != null)
+                return new CacheKey(source.uri, source.lastModified, source.size, width, height, exact, minSide, rotation,
+                        config.name(), filterName);
+
+            Cursor cursor = null;
+            try {
+                cursor = context.getContentResolver().query(uri, null, null, null, null);
+
+                if (cursor != null && cursor.moveToFirst()) {
+                    int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+                    if (sizeIndex != -1 && !cursor.isNull(sizeIndex))
+                        size = cursor.getLong(sizeIndex);
+
+                    int modifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                    if (modifiedIndex != -1 && !cursor.isNull(modifiedIndex)) {
+                        lastModified = cursor.getLong(modifiedIndex);
+                    } else {
+                        //MediaStore reports seconds
+                        modifiedIndex = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+                        if (modifiedIndex != -1 && !cursor.isNull(modifiedIndex))
+                            lastModified = cursor.getLong(modifiedIndex) * 1000;
+                    }
+                }
+            } catch (Exception e) {
+                //Some providers refuse queries, fall back to the Uri alone
+                e.printStackTrace();
+            } finally {
+                if (cursor != null)
+                    cursor.close();
+            }
+        }
+
+        CacheKey key = new CacheKey(uri.toString(), lastModified, size, width, height, exact, minSide, rotation, config.name(),
+                filterName);
+
+        //A failed query may succeed later, only known versions are kept
+        if (!ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && key.hasSignature())
+            sources.put(key.uri, key);
+
+        return key;
+    }
+
+    static void clear() {
+        sources.evictAll();
+    }
+
+    /**
+     * @param rotation User rotation in degrees
+     * @return Key for the same source and size with another rotation
+     */
+    CacheKey withRotation(int rotation) {
+        return new CacheKey(uri, lastModified, size, width, height, exact, minSide, rotation, config, filter);
+    }
+
+    /**
+     * @return true if the source version is known, so the signature changes when the source is edited
+     */
+    boolean hasSignature() {
+        return lastModified != -1 || size != -1;
+    }
+
+    /**
+     * @return Identity of the source version, independent of the requested output
+     */
+    String getSignature() {
+        return uri + "|" + lastModified + "|" + size;
+    }
+
+    /**
+     * @return Size of the source in bytes or -1 if unknown
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Requested pixel format
+     */
+    Bitmap.Config getConfig() {
+        return Bitmap.Config.valueOf(config);
+    }
+
+    /**
+     * @param source Key of another source
+     * @return Key for the other source with this key's output size, rotation and format
+     */
+    CacheKey withSource(CacheKey source) {
+        return new CacheKey(source.uri, source.lastModified, source.size, width, height, exact, minSide, rotation, config, filter);
+    }
+
+    /**
+     * @param other Another key
+     * @return true if both keys are for the same version of the same source
+     */
+    boolean isSameSource(CacheKey other) {
+        return uri.equals(other.uri) && lastModified == other.lastModified && size == other.size;
+    }
+
+    /**
+     * @param uri Source image Uri
+     * @return true if this key is for the given source
+     */
+    boolean isFor(Uri uri) {
+        return this.uri.equals(uri.toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof CacheKey))
+            return false;
+
+        CacheKey other = (CacheKey) o;
+        return lastModified == other.lastModified
+                && size == other.size
+                && Float.compare(width, other.width) == 0
+                && Float.compare(height, other.height) == 0
+                && exact == other.exact
+                && Float.compare(minSide, other.minSide) == 0
+                && rotation == other.rotation
+                && config.equals(other.config)
+                && filter.equals(other.filter)
+                && uri.equals(other.uri);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = uri.hashCode();
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        result = 31 * result + (int) (size ^ (size >>> 32));
+        result = 31 * result + Float.floatToIntBits(width);
+        result = 31 * result + Float.floatToIntBits(height);
+        result = 31 * result + (exact ? 1 : 0);
+        result = 31 * result + Float.floatToIntBits(minSide);
+        result = 31 * result + rotation;
+        result = 31 * result + config.hashCode();
+        result = 31 * result + filter.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return uri + "|" + lastModified + "|" + size + "|" + width + "x" + height + "|" + exact + "|" + minSide + "|" + rotation + "|" + config + "|" + filter;
+    }
+}
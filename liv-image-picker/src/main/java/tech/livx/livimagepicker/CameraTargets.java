@@ -0,0 +1,103 @@
+package tech.livx.livimagepicker;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.provider.MediaStore;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process wide cache of the activities handling ACTION_IMAGE_CAPTURE, so the chooser doesn't query the
+ * package manager on every tap. Dropped whenever a package is added, removed or changed.
+ */
+final class CameraTargets {
+    private static List<ComponentName> targets;
+    //Bumped on every invalidation so a resolve racing a package change isn't cached
+    private static int generation;
+    private static BroadcastReceiver receiver;
+
+    private CameraTargets() {
+    }
+
+    /**
+     * @param context Any context
+     * @return Camera activities, resolved on the calling thread if not cached
+     */
+    static List<ComponentName> get(Context context) {
+        int resolving;
+        synchronized (CameraTargets.class) {
+            register(context);
+
+            if (targets != null)
+                return targets;
+
+            resolving = generation;
+        }
+
+        List<ComponentName> resolved = resolve(context.getPackageManager());
+
+        synchronized (CameraTargets.class) {
+            if (resolving == generation)
+                targets = resolved;
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Resolve the camera activities on a background thread
+     *
+     * @param context Any context
+     */
+    static void prewarm(final Context context) {
+        PickerExecutors.getDefault().execute(new Runnable() {
+            @Override
+            public void run() {
+                get(context);
+            }
+        });
+    }
+
+    private static List<ComponentName> resolve(PackageManager packageManager) {
+        Intent captureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
+        List<ResolveInfo> listCam = packageManager.queryIntentActivities(captureIntent, 0);
+
+        List<ComponentName> components = new ArrayList<>(listCam.size());
+        for (ResolveInfo res : listCam)
+            components.add(new ComponentName(res.activityInfo.packageName, res.activityInfo.name));
+
+        return Collections.unmodifiableList(components);
+    }
+
+    private static void register(Context context) {
+        if (receiver != null)
+            return;
+
+        receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                synchronized (CameraTargets.class) {
+                    targets = null;
+                    generation++;
+                }
+            }
+        };
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+
+        //Registered for the life of the process
+        context.getApplicationContext().registerReceiver(receiver, filter);
+    }
+}
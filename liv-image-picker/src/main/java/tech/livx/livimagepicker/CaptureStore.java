@@ -0,0 +1,183 @@
+package tech.livx.livimagepicker;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * App private temp area for camera captures, shared with the camera through PickerFileProvider.
+ * Captures are deleted once replaced by a newer pick, trimmed oldest first to a byte cap and expire
+ * after a day.
+ */
+final class CaptureStore {
+    //Matches the files-path in res/xml/image_path.xml
+    private static final String DIRECTORY = "pick";
+    private static final String AUTHORITY_SUFFIX = ".livimagepicker.provider";
+    private static final int GRANT_FLAGS = Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION;
+
+    //Captures older than this are left overs, younger ones may still belong to a picker
+    static final long MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static boolean cleaned;
+
+    private CaptureStore() {
+    }
+
+    /**
+     * Create a Uri for a new capture, trimming older captures to the cap first
+     *
+     * @param context  Any context
+     * @param maxBytes Maximum bytes kept in the capture area
+     * @param keep     Capture still in use, never trimmed, may be null
+     * @return Content Uri the camera can write to, or null if the directory can't be created
+     */
+    static Uri create(Context context, long maxBytes, Uri keep) {
+        File directory = getDirectory(context);
+        if (!directory.exists() && !directory.mkdirs())
+            return null;
+
+        trim(context, directory, maxBytes, keep);
+
+        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.getDefault()).format(new Date());
+        File file = new File(directory, "IMG_" + timeStamp + ".jpg");
+
+        return FileProvider.getUriForFile(context, getAuthority(context), file);
+    }
+
+    /**
+     * Let the camera apps write to a capture Uri. Chooser targets and pre Lollipop cameras don't receive
+     * grants from the intent flags so the packages are granted directly, once for all intents.
+     *
+     * @param context Any context
+     * @param uri     Capture Uri, other Uris are ignored
+     * @param intents Intents carrying the Uri, flagged for the grant
+     */
+    static void grant(Context context, Uri uri, Intent... intents) {
+        if (!isCapture(context, uri))
+            return;
+
+        for (Intent intent : intents)
+            intent.addFlags(GRANT_FLAGS);
+
+        for (ComponentName component : CameraTargets.get(context))
+            context.grantUriPermission(component.getPackageName(), uri, GRANT_FLAGS);
+    }
+
+    /**
+     * Delete a capture that is no longer needed, other Uris are ignored
+     */
+    static void release(Context context, Uri uri) {
+        if (!isCapture(context, uri))
+            return;
+
+        context.revokeUriPermission(uri, GRANT_FLAGS);
+
+        File file = getFile(context, uri);
+        if (file.exists() && !file.delete())
+            file.deleteOnExit();
+    }
+
+    /**
+     * Delete expired captures, once per process. Captures of a day or less may still be waiting for the
+     * camera or a restore, in this or another picker, and are kept.
+     *
+     * @param context Any context
+     * @param keep    Captures restored from saved state, kept
+     */
+    static void cleanup(Context context, Uri... keep) {
+        synchronized (CaptureStore.class) {
+            if (cleaned)
+                return;
+            cleaned = true;
+        }
+
+        final File directory = getDirectory(context);
+        final File[] kept = new File[keep.length];
+        for (int i = 0; i < keep.length; i++)
+            kept[i] = isCapture(context, keep[i]) ? getFile(context, keep[i]) : null;
+
+        PickerExecutors.getDefault().execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteExpired(directory, System.currentTimeMillis(), kept);
+            }
+        });
+    }
+
+    /**
+     * @param directory Capture directory
+     * @param now       Current time in milliseconds
+     * @param kept      Captures never deleted, entries may be null
+     */
+    static void deleteExpired(File directory, long now, File... kept) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (now - file.lastModified() > MAX_AGE_MILLIS && !Arrays.asList(kept).contains(file))
+                file.delete();
+        }
+    }
+
+    private static void trim(Context context, File directory, long maxBytes, Uri keep) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        File kept = isCapture(context, keep) ? getFile(context, keep) : null;
+
+        long size = 0;
+        for (File file : files)
+            size += file.length();
+
+        //Least recently written first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+
+        for (File file : files) {
+            if (size <= maxBytes)
+                break;
+
+            if (file.equals(kept))
+                continue;
+
+            long length = file.length();
+            if (file.delete())
+                size -= length;
+        }
+    }
+
+    /**
+     * @return true if the Uri is a private capture
+     */
+    static boolean isCapture(Context context, Uri uri) {
+        return uri != null && getAuthority(context).equals(uri.getAuthority());
+    }
+
+    private static File getFile(Context context, Uri uri) {
+        return new File(getDirectory(context), uri.getLastPathSegment());
+    }
+
+    private static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    private static String getAuthority(Context context) {
+        return context.getPackageName() + AUTHORITY_SUFFIX;
+    }
+}
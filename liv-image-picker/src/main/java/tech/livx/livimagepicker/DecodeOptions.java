@@ -0,0 +1,83 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+
+/**
+ * Decode settings for ImagePicker
+ */
+public class DecodeOptions {
+    private Bitmap.Config config = Bitmap.Config.ARGB_8888;
+    private float memoryFraction = 0.25f;
+    private boolean configFallback = true;
+    private ResampleFilter filter;
+
+    /**
+     * Sets the pixel format of the output, RGB_565 halves memory for images without transparency.
+     *
+     * @param config RGB_565 or ARGB_8888, defaults to ARGB_8888
+     */
+    public void setConfig(Bitmap.Config config) {
+        if (config != Bitmap.Config.RGB_565 && config != Bitmap.Config.ARGB_8888)
+            throw new IllegalArgumentException("Only RGB_565 and ARGB_8888 are supported");
+
+        this.config = config;
+    }
+
+    public Bitmap.Config getConfig() {
+        return config;
+    }
+
+    /**
+     * Sets how much of the heap limit a single decode may use. Decodes that would use more are
+     * sampled down further, or fall back to RGB_565 if allowed.
+     *
+     * @param memoryFraction Fraction of Runtime.maxMemory(), defaults to 0.25
+     */
+    public void setMemoryFraction(float memoryFraction) {
+        if (memoryFraction <= 0 || memoryFraction > 1)
+            throw new IllegalArgumentException("memoryFraction must be in (0, 1]");
+
+        this.memoryFraction = memoryFraction;
+    }
+
+    public float getMemoryFraction() {
+        return memoryFraction;
+    }
+
+    /**
+     * Allows falling back to RGB_565 for opaque images before reducing the resolution to fit the budget
+     *
+     * @param configFallback true to allow the fallback, defaults to true
+     */
+    public void setConfigFallback(boolean configFallback) {
+        this.configFallback = configFallback;
+    }
+
+    public boolean isConfigFallback() {
+        return configFallback;
+    }
+
+    /**
+     * Resample with the given filter on int[] pixels split across threads instead of a single filtered
+     * Canvas draw. Needs the source and output pixels in memory once more as int arrays.
+     *
+     * @param filter Filter or null for the Canvas draw, defaults to null
+     */
+    public void setFilter(ResampleFilter filter) {
+        this.filter = filter;
+    }
+
+    public ResampleFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return Bytes a decode may allocate, bounded by both the fraction of the heap limit and the free heap
+     */
+    long getMemoryBudget() {
+        Runtime runtime = Runtime.getRuntime();
+        long available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+
+        return Math.min(available, (long) (runtime.maxMemory() * memoryFraction));
+    }
+}
@@ -0,0 +1,25 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * Result of a decode, keeps the sampled source around for later rotations
+ */
+class Decoded {
+    Uri uri;
+    CacheKey key;
+    Bitmap source;
+    int exifRotation;
+
+    //Rotation the decoder already applied to the source pixels
+    int bakedRotation;
+    Bitmap dest;
+    int rotation;
+
+    //Content fingerprint of the source, null if not read
+    String fingerprint;
+
+    //Only set while metrics are collected
+    PickMetrics metrics;
+}
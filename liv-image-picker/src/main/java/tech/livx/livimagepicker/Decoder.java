@@ -0,0 +1,726 @@
+package tech.livx.livimagepicker;
+
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.ImageDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decoder class used to turn a picked Uri into the sized and rotated output bitmap.
+ * Holds no reference to the picker so it can run on any executor.
+ */
+class Decoder {
+    //Bytes of the source kept in memory for the bounds and Exif passes before spooling to disk
+    static final int HEADER_BUFFER_SIZE = 256 * 1024;
+    //Sources above this many pixels get a preview, smaller ones decode fast enough without
+    private static final long PREVIEW_MIN_PIXELS = 4000000;
+    //Longest side of a sampled preview
+    private static final int PREVIEW_SIZE = 256;
+
+    private final Context context;
+    private final float maxWidth;
+    private final float maxHeight;
+    private final boolean exact;
+    private volatile float minSide;
+    private volatile boolean diskCacheEnabled;
+    private volatile DecodeOptions options = new DecodeOptions();
+
+    /**
+     * Receives a quick preview while a slow decode runs, called on a background thread
+     */
+    interface PreviewCallback {
+        void onPreview(Bitmap preview);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param context   Context used to resolve Uris, the application context is kept
+     * @param maxWidth  Maximum width of the image
+     * @param maxHeight Maximum height of the image
+     * @param exact     Flag to specify if the image must be exactly maxWidth and maxHeight
+     */
+    Decoder(Context context, float maxWidth, float maxHeight, boolean exact) {
+        this.context = context.getApplicationContext();
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.exact = exact;
+    }
+
+    void setDiskCacheEnabled(boolean diskCacheEnabled) {
+        this.diskCacheEnabled = diskCacheEnabled;
+    }
+
+    void setOptions(DecodeOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Keep the short side of a non exact output at least this long, for outputs that crop to any aspect
+     * ratio later. Sources smaller than that are still not scaled up.
+     *
+     * @param minSide Shortest side in pixels, 0 for none
+     */
+    void setMinSide(float minSide) {
+        this.minSide = minSide;
+    }
+
+    float getMaxWidth() {
+        return maxWidth;
+    }
+
+    float getMaxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * @return Resolver of the application context
+     */
+    ContentResolver getContentResolver() {
+        return context.getContentResolver();
+    }
+
+    /**
+     * Check if a source can be used without decoding: a JPEG already within the target size with a
+     * rotation only Exif orientation, so rotations can be written to the orientation tag instead.
+     * The target turns with the image, so the unrotated source is checked against the unturned target.
+     *
+     * @param metadata Header facts of the source, may be null
+     * @return true if no resample is needed
+     */
+    boolean canPassThrough(ImageMetadata metadata) {
+        if (metadata == null)
+            return false;
+
+        if (!"image/jpeg".equals(metadata.mimeType) || metadata.width <= 0 || metadata.height <= 0 || !metadata.plainOrientation)
+            return false;
+
+        return exact ? metadata.width == (int) maxWidth && metadata.height == (int) maxHeight
+                : metadata.width <= maxWidth && metadata.height <= maxHeight;
+    }
+
+    /**
+     * Header facts of a source, read with a header only pass unless cached
+     *
+     * @param uri Source image Uri
+     * @param key Key of the source
+     * @return Metadata or null if the source can't be opened
+     * @throws Exception on read failure
+     */
+    ImageMetadata getMetadata(Uri uri, CacheKey key) throws Exception {
+        ImageMetadata metadata = ImageMetadata.get(key);
+        if (metadata != null) {
+            Fingerprint.putUri(uri, metadata.fingerprint);
+            return metadata;
+        }
+
+        InputStream source = context.getContentResolver().openInputStream(uri);
+        if (source == null)
+            return null;
+
+        RewindableInputStream input = new RewindableInputStream(source, HEADER_BUFFER_SIZE, context.getCacheDir());
+        try {
+            BitmapFactory.Options bounds = readBounds(input);
+
+            ExifInterface exif = null;
+            if (ExifUtil.hasExif(bounds.outMimeType)) {
+                input.rewind();
+                exif = ExifUtil.readExif(input);
+            }
+
+            metadata = createMetadata(input, key, bounds, exif);
+            ImageMetadata.put(key, metadata);
+            Fingerprint.putUri(uri, metadata.fingerprint);
+        } finally {
+            input.close();
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Fingerprint of a source whose output came from the memory cache, taken from its metadata
+     *
+     * @param uri Source image Uri
+     * @param key Key of the source
+     * @return Fingerprint or null if unknown
+     */
+    private static String getFingerprint(Uri uri, CacheKey key) {
+        ImageMetadata metadata = ImageMetadata.get(key);
+        return metadata != null ? metadata.fingerprint : Fingerprint.forUri(uri);
+    }
+
+    /**
+     * Key of a source for this decoder's output size, looks up the source version with the resolver
+     *
+     * @param uri      Source image Uri
+     * @param rotation User rotation in degrees
+     * @return Cache key
+     */
+    CacheKey createKey(Uri uri, int rotation) {
+        return CacheKey.create(context, uri, maxWidth, maxHeight, exact, minSide, rotation, options.getConfig(),
+                options.getFilter());
+    }
+
+    private static BitmapFactory.Options readBounds(InputStream input) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(input, null, bounds);
+        return bounds;
+    }
+
+    private static ImageMetadata createMetadata(RewindableInputStream input, CacheKey key, BitmapFactory.Options bounds,
+                                                ExifInterface exif) {
+        boolean plain = !ExifUtil.hasExif(bounds.outMimeType) || ExifUtil.hasPlainOrientation(exif);
+
+        //The leading bytes are still recorded from the header passes
+        String fingerprint = null;
+        try {
+            fingerprint = Fingerprint.compute(input, key.getSize(), bounds.outWidth, bounds.outHeight, bounds.outMimeType, exif);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return new ImageMetadata(bounds.outWidth, bounds.outHeight, bounds.outMimeType, ExifUtil.getExifOrientation(exif),
+                plain, fingerprint);
+    }
+
+    /**
+     * Decode a Uri, checking the caches first
+     *
+     * @param uri      Source image Uri
+     * @param rotation User rotation in degrees
+     * @param key      Key of the source from an earlier decode of the same pick, null to look it up
+     * @param task     Task running the decode, checked for cancellation between stages, may be null
+     * @param preview  Callback for a quick preview of a slow decode, may be null
+     * @param metrics  Metrics record filled in along the way, may be null
+     * @return Decoded image or null on failure or cancellation
+     * @throws Exception on read failure
+     */
+    Decoded decode(Uri uri, int rotation, CacheKey key, PickerTask<?> task, PreviewCallback preview, PickMetrics metrics) throws Exception {
+        Decoded decoded = new Decoded();
+        decoded.uri = uri;
+        decoded.rotation = rotation;
+        decoded.metrics = metrics;
+
+        long time = metrics != null ? System.nanoTime() : 0;
+
+        //Check the memory cache before touching the resolver for pixels
+        decoded.key = key != null ? key.withRotation(rotation) : createKey(uri, rotation);
+        decoded.dest = BitmapCache.getInstance().get(decoded.key);
+        if (decoded.dest != null) {
+            decoded.fingerprint = getFingerprint(uri, decoded.key);
+            if (metrics != null) {
+                metrics.record(PickMetrics.Stage.CACHE, time);
+                metrics.setCacheResult(PickMetrics.CacheResult.MEMORY);
+            }
+            return decoded;
+        }
+
+        //Processed image from before process death
+        if (diskCacheEnabled) {
+            DiskCache.Entry entry = DiskCache.getInstance(context).get(decoded.key);
+            if (entry != null) {
+                decoded.dest = entry.bitmap;
+                BitmapCache.getInstance().put(decoded.key, decoded.dest);
+
+                //The fingerprint was stored with the image, the source isn't touched
+                decoded.fingerprint = entry.fingerprint;
+                Fingerprint.put(decoded.fingerprint, decoded.key, uri);
+                if (metrics != null) {
+                    metrics.record(PickMetrics.Stage.CACHE, time);
+                    metrics.setCacheResult(PickMetrics.CacheResult.DISK);
+                    metrics.addAllocation(decoded.dest);
+                }
+                return decoded;
+            }
+        }
+
+        if (metrics != null)
+            time = metrics.record(PickMetrics.Stage.CACHE, time);
+
+        if (task != null && task.isCancelled())
+            return null;
+
+        //Open the source once, bounds, Exif and pixels are all read from this stream
+        InputStream source = context.getContentResolver().openInputStream(uri);
+        if (source == null)
+            return null;
+
+        if (metrics != null)
+            time = metrics.record(PickMetrics.Stage.OPEN, time);
+
+        RewindableInputStream input = new RewindableInputStream(source, HEADER_BUFFER_SIZE, context.getCacheDir());
+
+        //Set once the full decode is done so a late preview is skipped
+        AtomicBoolean finished = new AtomicBoolean();
+        //Set once the pixels are being decoded, duplicates and cancellations stop before
+        boolean decoding = false;
+
+        try {
+            //Header facts are read once per version of the source
+            ImageMetadata metadata = ImageMetadata.get(decoded.key);
+            ExifInterface exif = null;
+            if (metadata == null) {
+                //Load actual bounds of image
+                BitmapFactory.Options bounds = readBounds(input);
+
+                if (metrics != null)
+                    time = metrics.record(PickMetrics.Stage.BOUNDS, time);
+
+                //Exif is read from the recorded bytes, the pixel pass rewinds to the start
+                if (ExifUtil.hasExif(bounds.outMimeType)) {
+                    input.rewind();
+                    exif = ExifUtil.readExif(input);
+                }
+
+                metadata = createMetadata(input, decoded.key, bounds, exif);
+                ImageMetadata.put(decoded.key, metadata);
+            }
+
+            decoded.fingerprint = metadata.fingerprint;
+
+            //Same content picked before through another Uri, reuse its output
+            if (findDuplicate(decoded)) {
+                if (metrics != null)
+                    metrics.setCacheResult(PickMetrics.CacheResult.MEMORY);
+                return decoded;
+            }
+
+            int sourceWidth = metadata.width;
+            int sourceHeight = metadata.height;
+            String mimeType = metadata.mimeType;
+            decoded.exifRotation = metadata.orientation;
+            boolean previewSent = false;
+
+            if (metrics != null)
+                metrics.setSource(sourceWidth, sourceHeight);
+
+            //The embedded thumbnail comes with the header at no extra read
+            if (exif != null && preview != null && isSlowDecode(sourceWidth, sourceHeight))
+                previewSent = sendPreview(ExifUtil.getThumbnail(exif), rotation + decoded.exifRotation, preview);
+
+            if (preview != null && !previewSent && isSlowDecode(sourceWidth, sourceHeight))
+                startPreviewDecode(uri, sourceWidth, sourceHeight, rotation + decoded.exifRotation, finished, preview);
+
+            if (metrics != null)
+                time = metrics.record(PickMetrics.Stage.EXIF, time);
+
+            if (task != null && task.isCancelled())
+                return null;
+
+            decoding = true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                //Scale (and crop) to the target in one native pass
+                decoded.source = decodeToTarget(uri, input, decoded.exifRotation);
+                decoded.bakedRotation = decoded.exifRotation;
+            } else {
+                //Exact crops only need the part of the source that ends up in the output
+                Rect region = exact && isRegionDecodable(mimeType) ? getCropRegion(sourceWidth, sourceHeight) : null;
+
+                BitmapFactory.Options postLoadOptions;
+                if (region != null)
+                    postLoadOptions = fitBudget(region.width(), region.height(), PickerMath.getSampleSize(region.width(), region.height(), maxWidth, maxHeight), mimeType);
+                else
+                    postLoadOptions = fitBudget(sourceWidth, sourceHeight, getSampleSize(sourceWidth, sourceHeight), mimeType);
+
+                if (metrics != null)
+                    metrics.setSampleSize(postLoadOptions.inSampleSize);
+
+                input.rewind();
+                input.stopRecording();
+
+                if (region != null) {
+                    decoded.source = decodeRegion(input, region, postLoadOptions);
+                } else {
+                    int scaleFactor = postLoadOptions.inSampleSize;
+                    int sampledWidth = (sourceWidth + scaleFactor - 1) / scaleFactor;
+                    int sampledHeight = (sourceHeight + scaleFactor - 1) / scaleFactor;
+                    int[] target = getTargetSize(sampledWidth, sampledHeight, maxWidth, maxHeight);
+
+                    //Let the decoder scale the rest of the way to the target instead of a Canvas pass
+                    if (target[0] < sampledWidth) {
+                        postLoadOptions.inScaled = true;
+                        postLoadOptions.inDensity = sampledWidth;
+                        postLoadOptions.inTargetDensity = target[0];
+                    } else {
+                        target[0] = sampledWidth;
+                        target[1] = sampledHeight;
+                    }
+
+                    //Decode into a pooled bitmap when one fits, rounding up to cover the decoder's rounding
+                    postLoadOptions.inBitmap = BitmapPool.getInstance().getReusable(target[0] + 1, target[1] + 1,
+                            postLoadOptions.inPreferredConfig);
+
+                    //Load image with calculated scale factor, streaming the rest of the source
+                    decoded.source = decodeSampled(uri, input, postLoadOptions);
+
+                    //The scaled decode leaves the bitmap at the target density, it would draw at the wrong size
+                    if (postLoadOptions.inDensity != 0 && decoded.source != null)
+                        decoded.source.setDensity(context.getResources().getDisplayMetrics().densityDpi);
+                }
+            }
+        } finally {
+            finished.set(true);
+            input.close();
+
+            if (metrics != null) {
+                if (decoding)
+                    metrics.record(PickMetrics.Stage.DECODE, time);
+
+                metrics.addBytesRead(input.getSourceBytesRead());
+                metrics.addAllocation(decoded.source);
+            }
+        }
+
+        if (decoded.source == null)
+            return null;
+
+        if (task != null && task.isCancelled()) {
+            BitmapPool.getInstance().put(decoded.source);
+            return null;
+        }
+
+        return transform(decoded);
+    }
+
+    /**
+     * Look up the output of an earlier source with the same fingerprint
+     *
+     * @param decoded Decode with key and fingerprint set, dest is set on a hit
+     * @return true if a duplicate was found
+     */
+    private boolean findDuplicate(Decoded decoded) {
+        CacheKey previous = Fingerprint.getSource(decoded.fingerprint);
+        if (previous == null || previous.isSameSource(decoded.key))
+            return false;
+
+        Bitmap dest = BitmapCache.getInstance().get(decoded.key.withSource(previous));
+        if (dest == null)
+            return false;
+
+        //Alias the output under this Uri too
+        decoded.dest = dest;
+        BitmapCache.getInstance().put(decoded.key, dest);
+        Fingerprint.put(decoded.fingerprint, decoded.key, decoded.uri);
+        return true;
+    }
+
+    /**
+     * @return true if the source is large enough for a preview to arrive noticeably before the full image
+     */
+    private static boolean isSlowDecode(int width, int height) {
+        return (long) width * height > PREVIEW_MIN_PIXELS;
+    }
+
+    /**
+     * Rotate a preview and hand it to the callback
+     *
+     * @return true if a preview was sent
+     */
+    private static boolean sendPreview(Bitmap bitmap, int rotation, PreviewCallback preview) {
+        if (bitmap == null)
+            return false;
+
+        Bitmap rotated = BitmapTransform.transform(bitmap, bitmap.getWidth(), bitmap.getHeight(), false, rotation);
+        if (rotated == null)
+            return false;
+
+        if (rotated != bitmap)
+            bitmap.recycle();
+
+        preview.onPreview(rotated);
+        return true;
+    }
+
+    /**
+     * Decode a heavily sampled copy of the source alongside the full decode, for sources without an
+     * embedded thumbnail
+     */
+    private void startPreviewDecode(final Uri uri, final int width, final int height, final int rotation,
+                                    final AtomicBoolean finished, final PreviewCallback preview) {
+        PickerExecutors.getEncoder().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (finished.get())
+                    return;
+
+                try {
+                    InputStream input = context.getContentResolver().openInputStream(uri);
+                    if (input == null)
+                        return;
+
+                    Bitmap bitmap;
+                    try {
+                        BitmapFactory.Options options = new BitmapFactory.Options();
+                        options.inPreferredConfig = Bitmap.Config.RGB_565;
+                        options.inSampleSize = 1;
+                        while (Math.max(width, height) / (options.inSampleSize * 2) >= PREVIEW_SIZE)
+                            options.inSampleSize *= 2;
+
+                        bitmap = BitmapFactory.decodeStream(input, null, options);
+                    } finally {
+                        input.close();
+                    }
+
+                    if (bitmap != null && !finished.get())
+                        sendPreview(bitmap, rotation, preview);
+                } catch (Exception | OutOfMemoryError e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Largest power of two sample size that keeps the full frame at least the target size
+     */
+    private int getSampleSize(int width, int height) {
+        int[] target = getTargetSize(width, height, maxWidth, maxHeight);
+        return PickerMath.getSampleSize(width, height, target[0], target[1]);
+    }
+
+    /**
+     * Size of the output for a frame: covering the box when exact, otherwise fitting inside it unless that
+     * would leave the short side below minSide
+     */
+    private int[] getTargetSize(int width, int height, float boxWidth, float boxHeight) {
+        if (exact)
+            return PickerMath.getTargetSize(width, height, boxWidth, boxHeight, true);
+
+        return PickerMath.getTargetSize(width, height, boxWidth, boxHeight, minSide);
+    }
+
+    /**
+     * Centered region of the source with the aspect ratio of the target. The exact target turns with the
+     * image when rotated (Exif or user), so the region has the target's aspect in the source's own orientation
+     * and stays valid for every rotation.
+     *
+     * @return Region or null if a full decode is just as cheap
+     */
+    private Rect getCropRegion(int width, int height) {
+        int[] region = PickerMath.getCropRegion(width, height, maxWidth, maxHeight);
+        return region != null ? new Rect(region[0], region[1], region[2], region[3]) : null;
+    }
+
+    private static boolean isRegionDecodable(String mimeType) {
+        return "image/jpeg".equals(mimeType) || "image/png".equals(mimeType);
+    }
+
+    /**
+     * Raise the sample size or fall back to RGB_565 until the worst case allocation fits the memory budget,
+     * instead of running into OutOfMemoryError
+     *
+     * @param width       Width of the area to decode
+     * @param height      Height of the area to decode
+     * @param scaleFactor Sample size required for the target size
+     * @param mimeType    Source mime type
+     * @return Decode options with sample size and config set
+     */
+    private BitmapFactory.Options fitBudget(int width, int height, int scaleFactor, String mimeType) {
+        Bitmap.Config config = options.getConfig();
+        long budget = options.getMemoryBudget();
+
+        while (getSampledBytes(width, height, scaleFactor, config) + getDestBytes(width, height, scaleFactor, config)
+                + getResampleBytes(width, height, scaleFactor) > budget) {
+            if (config == Bitmap.Config.ARGB_8888 && options.isConfigFallback() && !mayHaveAlpha(mimeType)) {
+                config = Bitmap.Config.RGB_565;
+            } else if (exact ? getSampledBytes(width, height, scaleFactor, config) > getDestBytes(width, height, scaleFactor, config)
+                    : width / scaleFactor > 1 || height / scaleFactor > 1) {
+                scaleFactor *= 2;
+            } else {
+                //Exact destination alone is over budget, sampling further can't help
+                break;
+            }
+        }
+
+        BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inSampleSize = scaleFactor;
+        decodeOptions.inPreferredConfig = config;
+        decodeOptions.inMutable = true;
+        return decodeOptions;
+    }
+
+    private long getSampledBytes(int width, int height, int scaleFactor, Bitmap.Config config) {
+        return getSampledPixels(width, height, scaleFactor) * BitmapPool.getBytesPerPixel(config);
+    }
+
+    private long getDestBytes(int width, int height, int scaleFactor, Bitmap.Config config) {
+        return getDestPixels(width, height, scaleFactor) * BitmapPool.getBytesPerPixel(config);
+    }
+
+    /**
+     * Pixel buffers of the resampler, held next to the sampled and destination bitmaps while it runs
+     */
+    private long getResampleBytes(int width, int height, int scaleFactor) {
+        if (options.getFilter() == null)
+            return 0;
+
+        long sampledHeight = (height + scaleFactor - 1) / scaleFactor;
+        long destPixels = getDestPixels(width, height, scaleFactor);
+        long bandWidth = exact ? Math.round(maxWidth) : (width + scaleFactor - 1) / scaleFactor;
+
+        return ResampleKernel.getBufferBytes(getSampledPixels(width, height, scaleFactor), bandWidth * sampledHeight, destPixels);
+    }
+
+    private static long getSampledPixels(int width, int height, int scaleFactor) {
+        long sampledWidth = (width + scaleFactor - 1) / scaleFactor;
+        long sampledHeight = (height + scaleFactor - 1) / scaleFactor;
+
+        return sampledWidth * sampledHeight;
+    }
+
+    private long getDestPixels(int width, int height, int scaleFactor) {
+        if (!exact)
+            return getSampledPixels(width, height, scaleFactor);
+
+        return (long) maxWidth * (long) maxHeight;
+    }
+
+    private static boolean mayHaveAlpha(String mimeType) {
+        return !"image/jpeg".equals(mimeType);
+    }
+
+    /**
+     * Decode only the crop region of the source
+     */
+    private Bitmap decodeRegion(InputStream input, Rect region, BitmapFactory.Options options) throws Exception {
+        BitmapRegionDecoder regionDecoder = BitmapRegionDecoder.newInstance(input, false);
+        try {
+            return regionDecoder.decodeRegion(region, options);
+        } finally {
+            regionDecoder.recycle();
+        }
+    }
+
+    /**
+     * Decode the pixels, falling back to a fresh allocation if the pooled bitmap is rejected
+     */
+    private Bitmap decodeSampled(Uri uri, InputStream input, BitmapFactory.Options options) throws Exception {
+        try {
+            return BitmapFactory.decodeStream(input, null, options);
+        } catch (IllegalArgumentException e) {
+            if (options.inBitmap == null)
+                throw e;
+
+            //The stream is partly consumed so this rare path has to open the source again
+            BitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+
+            InputStream retry = context.getContentResolver().openInputStream(uri);
+            if (retry == null)
+                return null;
+
+            try {
+                return BitmapFactory.decodeStream(retry, null, options);
+            } finally {
+                retry.close();
+            }
+        }
+    }
+
+    /**
+     * Decode straight to the target size with ImageDecoder. ImageDecoder applies the Exif orientation itself,
+     * the target box turns with it. The source is read from a file, either the picked one or the rest of the
+     * stream spooled to disk, so it is never copied into the heap. The memory budget, region decode and
+     * bitmap pool of the BitmapFactory path don't apply here.
+     */
+    @TargetApi(Build.VERSION_CODES.P)
+    private Bitmap decodeToTarget(Uri uri, RewindableInputStream input, int exifRotation) throws Exception {
+        boolean turned = PickerMath.isTurned(exifRotation);
+        final float boxWidth = turned ? maxHeight : maxWidth;
+        final float boxHeight = turned ? maxWidth : maxHeight;
+        final Bitmap.Config config = options.getConfig();
+
+        ImageDecoder.Source source;
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null)
+            source = ImageDecoder.createSource(new File(uri.getPath()));
+        else
+            source = ImageDecoder.createSource(input.spoolAll());
+
+        return ImageDecoder.decodeBitmap(source, new ImageDecoder.OnHeaderDecodedListener() {
+            @Override
+            public void onHeaderDecoded(ImageDecoder decoder, ImageDecoder.ImageInfo info, ImageDecoder.Source source) {
+                int width = info.getSize().getWidth();
+                int height = info.getSize().getHeight();
+                int[] target = getTargetSize(width, height, boxWidth, boxHeight);
+
+                //Software and mutable so the result can be drawn for rotations and pooled afterwards
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+                decoder.setMutableRequired(true);
+                if (config == Bitmap.Config.RGB_565)
+                    decoder.setMemorySizePolicy(ImageDecoder.MEMORY_POLICY_LOW_RAM);
+
+                if (target[0] != width || target[1] != height)
+                    decoder.setTargetSize(target[0], target[1]);
+
+                if (exact) {
+                    int cropWidth = Math.min(target[0], (int) boxWidth);
+                    int cropHeight = Math.min(target[1], (int) boxHeight);
+                    int left = (target[0] - cropWidth) / 2;
+                    int top = (target[1] - cropHeight) / 2;
+
+                    decoder.setCrop(new Rect(left, top, left + cropWidth, top + cropHeight));
+                }
+            }
+        });
+    }
+
+    /**
+     * Render the source of a previous decode at the rotation of the given result
+     *
+     * @param decoded Result carrying the source, Exif rotation, key and user rotation
+     * @return The same result with dest set, or null if the target size is empty
+     */
+    Decoded transform(Decoded decoded) {
+        long time = decoded.metrics != null ? System.nanoTime() : 0;
+
+        //The target box turns with any rotation already applied to the source
+        boolean turned = PickerMath.isTurned(decoded.bakedRotation);
+        float boxWidth = turned ? maxHeight : maxWidth;
+        float boxHeight = turned ? maxWidth : maxHeight;
+
+        int remaining = decoded.rotation + decoded.exifRotation - decoded.bakedRotation;
+        ResampleFilter filter = options.getFilter();
+
+        if (filter != null) {
+            try {
+                decoded.dest = Resampler.transform(decoded.source, boxWidth, boxHeight, exact, remaining, filter);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        } else {
+            decoded.dest = BitmapTransform.transform(decoded.source, boxWidth, boxHeight, exact, remaining);
+        }
+
+        if (decoded.dest == null)
+            return null;
+
+        if (decoded.metrics != null) {
+            decoded.metrics.record(PickMetrics.Stage.TRANSFORM, time);
+            if (decoded.dest != decoded.source)
+                decoded.metrics.addAllocation(decoded.dest);
+        }
+
+        BitmapCache.getInstance().put(decoded.key, decoded.dest);
+        if (diskCacheEnabled)
+            DiskCache.getInstance(context).put(decoded.key, decoded.dest, decoded.fingerprint);
+
+        Fingerprint.put(decoded.fingerprint, decoded.key, decoded.uri);
+
+        return decoded;
+    }
+}
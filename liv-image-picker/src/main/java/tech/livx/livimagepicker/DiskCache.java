@@ -0,0 +1,231 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Size capped disk cache of processed images stored in the app cache directory.
+ * Lets a picker restore its image after process death without decoding the full resolution original.
+ * Each entry holds the source fingerprint ahead of the PNG so a restore never has to read the source.
+ */
+class DiskCache {
+    private static final String DIRECTORY = "liv-image-picker";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MAX_BYTES = 32 * 1024 * 1024;
+    //Part of the file names, entries of an older layout are never read and get trimmed
+    private static final int VERSION = 2;
+
+    private static DiskCache instance;
+
+    private final File directory;
+    private final long maxBytes;
+
+    //Writes are serialised on one background thread so callers never wait on the disk
+    private final Executor writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LivImagePicker-DiskCache");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private DiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param context Context used to locate the cache directory
+     * @return Shared disk cache
+     */
+    static synchronized DiskCache getInstance(Context context) {
+        if (instance == null)
+            instance = new DiskCache(new File(context.getCacheDir(), DIRECTORY), MAX_BYTES);
+
+        return instance;
+    }
+
+    /**
+     * Read a processed image
+     *
+     * @param key Cache key
+     * @return Cached image or null if not cached
+     */
+    Entry get(CacheKey key) {
+        File file = getFile(key);
+        if (!file.exists())
+            return null;
+
+        //PNG decodes to ARGB_8888 unless told otherwise
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = key.getConfig();
+
+        String fingerprint;
+        Bitmap bitmap;
+        try {
+            DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                fingerprint = stream.readUTF();
+                bitmap = BitmapFactory.decodeStream(stream, null, options);
+            } finally {
+                stream.close();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (bitmap == null)
+            return null;
+
+        //A decode in another format than the key asked for would be a different output
+        if (bitmap.getConfig() != key.getConfig()) {
+            bitmap.recycle();
+            return null;
+        }
+
+        //Mark as recently used for trimming
+        file.setLastModified(System.currentTimeMillis());
+
+        return new Entry(bitmap, fingerprint.isEmpty() ? null : fingerprint);
+    }
+
+    /**
+     * Write a processed image in the background. The image is copied first, it is handed to the app
+     * which may recycle or pool it before the write gets to it.
+     *
+     * @param key         Cache key
+     * @param bitmap      Processed image
+     * @param fingerprint Fingerprint of the source or null
+     */
+    void put(final CacheKey key, Bitmap bitmap, final String fingerprint) {
+        final Bitmap copy;
+        try {
+            copy = bitmap.copy(bitmap.getConfig(), false);
+        } catch (OutOfMemoryError e) {
+            //Skipping the cache entry is fine, failing the pick is not
+            e.printStackTrace();
+            return;
+        }
+
+        if (copy == null)
+            return;
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(key, copy, fingerprint);
+                copy.recycle();
+                trim();
+            }
+        });
+    }
+
+    private void write(CacheKey key, Bitmap bitmap, String fingerprint) {
+        if (!directory.exists() && !directory.mkdirs())
+            return;
+
+        File file = getFile(key);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+
+        try {
+            //Write to a temp file and rename so readers never see a partial image
+            FileOutputStream stream = new FileOutputStream(temp);
+            try {
+                DataOutputStream buffered = new DataOutputStream(new BufferedOutputStream(stream));
+                buffered.writeUTF(fingerprint != null ? fingerprint : "");
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, buffered);
+                buffered.flush();
+                stream.getFD().sync();
+            } finally {
+                stream.close();
+            }
+
+            if (!temp.renameTo(file))
+                temp.delete();
+        } catch (Exception e) {
+            e.printStackTrace();
+            temp.delete();
+        }
+    }
+
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        long total = 0;
+        for (File file : files)
+            total += file.length();
+
+        if (total <= maxBytes)
+            return;
+
+        //Oldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File file : files) {
+            if (total <= maxBytes)
+                break;
+
+            long length = file.length();
+            if (file.delete())
+                total -= length;
+        }
+    }
+
+    private File getFile(CacheKey key) {
+        return new File(directory, hash(VERSION + "|" + key));
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(value.getBytes("UTF-8"));
+
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes)
+                builder.append(String.format("%02x", b));
+
+            return builder.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    /**
+     * Cached image with the fingerprint of its source
+     */
+    static final class Entry {
+        final Bitmap bitmap;
+        //Null if the source couldn't be fingerprinted
+        final String fingerprint;
+
+        Entry(Bitmap bitmap, String fingerprint) {
+            this.bitmap = bitmap;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * Output that compresses or encodes in the background. Lets the picker time the encode and report
+ * metrics once it finished instead of when the bitmap was handed over.
+ */
+interface EncodingOutput {
+
+    /**
+     * Same as Output.process, the output records the ENCODE stage and reports the metrics when done
+     *
+     * @param uri     Source image Uri
+     * @param bitmap  Processed image
+     * @param metrics Metrics of the pick, may be null
+     */
+    void process(Uri uri, Bitmap bitmap, PickMetrics metrics);
+}
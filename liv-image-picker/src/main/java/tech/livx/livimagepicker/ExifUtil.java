@@ -1,78 +1,110 @@
 package tech.livx.livimagepicker;
 
-import android.content.Context;
-import android.database.Cursor;
+import android.graphics.Bitmap;
+
 import androidx.exifinterface.media.ExifInterface;
-import android.net.Uri;
-import android.provider.MediaStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * ExifUtil class used determine rotation matrix depending on image Exif values
  *
  * @author Limitless Virtual
- * @version 0.1
+ * @version 0.3
  */
 class ExifUtil {
 
     /**
-     * Retrieve Exif from content provider
+     * Parse the Exif block of an already opened image stream. Works for any Uri scheme since nothing is
+     * re-read from the content provider or file system.
      *
-     * @param context Application context
-     * @param src     Selected image Uri
-     * @return Orientation in degrees
+     * @param input Image stream positioned at the start of the image
+     * @return Parsed Exif or null if it can't be read
      */
-    static int getExifOrientationFromGallery(Context context, Uri src) {
-        Cursor cursor = context.getContentResolver().query(src,
-                new String[]{MediaStore.Images.ImageColumns.ORIENTATION}, null, null, null);
+    static ExifInterface readExif(InputStream input) {
+        try {
+            return new ExifInterface(input);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        if(cursor == null)
+    /**
+     * @param exif Parsed Exif, may be null
+     * @return Orientation in degrees
+     */
+    static int getExifOrientation(ExifInterface exif) {
+        if (exif == null)
             return 0;
 
-        if (cursor.getCount() != 1 && cursor.getColumnCount() != 1) {
+        try {
+            int orientation = exif.getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_UNDEFINED);
+
+            return PickerMath.getOrientationDegrees(orientation);
+        } catch (Exception e) {
+            e.printStackTrace();
             return 0;
         }
+    }
 
-        cursor.moveToFirst();
-        int orientation = cursor.getInt(0);
-        cursor.close();
-
-        return orientation;
+    /**
+     * @param exif Parsed Exif, may be null
+     * @return true if the orientation is a rotation only so a further rotation can be written to the tag
+     */
+    static boolean hasPlainOrientation(ExifInterface exif) {
+        return exif != null && PickerMath.isPlainRotation(
+                exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED));
     }
 
     /**
-     * Retrieve Exif from content provider
+     * Add a rotation to the Exif orientation of a JPEG file. Only the Exif block is rewritten, the
+     * compressed image data is left untouched.
      *
-     * @param context Application context
-     * @param src     Selected image Uri
-     * @return orientation in degrees
+     * @param file     JPEG file with a plain rotation orientation
+     * @param rotation Rotation to add in degrees
+     * @throws IOException on read or write failure
      */
-    static int getExifOrientationFromCamera(Context context, Uri src) {
-        int rotate = 0;
-        try {
-            String path = src.getPath();
+    static void rotate(File file, int rotation) throws IOException {
+        if (PickerMath.normalizeRotation(rotation) == 0)
+            return;
 
-            if(path == null)
-                return rotate;
+        ExifInterface exif = new ExifInterface(file.getPath());
+        int degrees = getExifOrientation(exif) + rotation;
 
-            ExifInterface exif = new ExifInterface(path);
-            int orientation = exif.getAttributeInt(
-                    ExifInterface.TAG_ORIENTATION,
-                    ExifInterface.ORIENTATION_UNDEFINED);
+        exif.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(PickerMath.getOrientation(degrees)));
+        exif.saveAttributes();
+    }
 
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    rotate = 270;
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    rotate = 180;
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    rotate = 90;
-                    break;
-            }
-        } catch (Exception e) {
+    /**
+     * @param exif Parsed Exif, may be null
+     * @return Embedded thumbnail, unrotated, or null if there is none
+     */
+    static Bitmap getThumbnail(ExifInterface exif) {
+        if (exif == null)
+            return null;
+
+        try {
+            return exif.hasThumbnail() ? exif.getThumbnailBitmap() : null;
+        } catch (Exception | OutOfMemoryError e) {
             e.printStackTrace();
+            return null;
         }
-        return rotate;
     }
-}
\ No newline at end of file
+
+    /**
+     * Check if ExifInterface can read Exif from a stream of the given type. WebP may keep its Exif chunk
+     * after the image data, the stream then records up to it.
+     *
+     * @param mimeType Mime type reported by the bounds pass
+     * @return true if the type may carry Exif, e.g. the orientation of a HEIF camera photo
+     */
+    static boolean hasExif(String mimeType) {
+        return "image/jpeg".equals(mimeType) || "image/png".equals(mimeType) || "image/webp".equals(mimeType)
+                || "image/heif".equals(mimeType) || "image/heic".equals(mimeType);
+    }
+}
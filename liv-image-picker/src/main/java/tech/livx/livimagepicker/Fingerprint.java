@@ -0,0 +1,127 @@
+package tech.livx.livimagepicker;
+
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * Cheap content fingerprint of a source image, so the same photo picked through another Uri or provider
+ * is recognised without decoding it. Hashes the source size, dimensions, the leading bytes (Exif block,
+ * thumbnail and the start of the image data) and the Exif fields identifying the capture. The trailing
+ * bytes aren't hashed: provider streams can't seek, so reaching them means reading the whole source or
+ * opening it a second time.
+ */
+final class Fingerprint {
+    //Leading bytes hashed, well within what the header passes already record
+    private static final int HEAD_BYTES = 64 * 1024;
+    private static final int MAX_ENTRIES = 128;
+
+    private static final String[] EXIF_TAGS = {
+            ExifInterface.TAG_DATETIME_ORIGINAL,
+            ExifInterface.TAG_SUBSEC_TIME_ORIGINAL,
+            ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL,
+            ExifInterface.TAG_IMAGE_UNIQUE_ID
+    };
+
+    //Fingerprint to the key of the last source decoded with it
+    private static final LruCache<String, CacheKey> sources = new LruCache<>(MAX_ENTRIES);
+    //Uri to the fingerprint of its last decode
+    private static final LruCache<String, String> uris = new LruCache<>(MAX_ENTRIES);
+
+    private Fingerprint() {
+    }
+
+    /**
+     * @param input    Source stream positioned anywhere, rewound to the start
+     * @param size     Size of the source in bytes or -1 if unknown
+     * @param width    Width of the source
+     * @param height   Height of the source
+     * @param mimeType Mime type of the source
+     * @param exif     Parsed Exif or null
+     * @return Hex fingerprint
+     * @throws IOException on read failure
+     */
+    static String compute(RewindableInputStream input, long size, int width, int height, String mimeType,
+                          ExifInterface exif) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (Exception e) {
+            throw new IOException(e.toString());
+        }
+
+        digest.update((size + "|" + width + "x" + height + "|" + mimeType).getBytes("UTF-8"));
+
+        input.rewind();
+        byte[] head = new byte[HEAD_BYTES];
+        int length = readFully(input, head);
+        digest.update(head, 0, length);
+
+        if (exif != null) {
+            for (String tag : EXIF_TAGS) {
+                String value = exif.getAttribute(tag);
+                digest.update(((value != null ? value : "") + "|").getBytes("UTF-8"));
+            }
+        }
+
+        byte[] bytes = digest.digest();
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            builder.append(String.format("%02x", b));
+
+        return builder.toString();
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        int count;
+        while (length < buffer.length && (count = input.read(buffer, length, buffer.length - length)) != -1)
+            length += count;
+
+        return length;
+    }
+
+    /**
+     * Remember the source a fingerprint was decoded from
+     */
+    static void put(String fingerprint, CacheKey key, Uri uri) {
+        if (fingerprint == null)
+            return;
+
+        sources.put(fingerprint, key);
+        putUri(uri, fingerprint);
+    }
+
+    /**
+     * Remember the fingerprint of a Uri whose source was read without decoding an output from it
+     */
+    static void putUri(Uri uri, String fingerprint) {
+        if (fingerprint != null)
+            uris.put(uri.toString(), fingerprint);
+    }
+
+    /**
+     * @return Key of an earlier source with the fingerprint, any output size, or null
+     */
+    static CacheKey getSource(String fingerprint) {
+        return fingerprint != null ? sources.get(fingerprint) : null;
+    }
+
+    /**
+     * @return Fingerprint of the last read of the Uri in this process or null
+     */
+    static String forUri(Uri uri) {
+        return uris.get(uri.toString());
+    }
+
+    static void clear() {
+        sources.evictAll();
+        uris.evictAll();
+    }
+}
@@ -0,0 +1,246 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Picked image known from its header only. The decode, resize and encodes run the first time they are
+ * asked for and are kept for later calls, so an image that is only queued or shown as a placeholder
+ * costs no pixel work.
+ */
+public final class ImageHandle {
+    private final Uri uri;
+    private final int width;
+    private final int height;
+    private final String mimeType;
+    private final int orientation;
+    private final int rotation;
+    private final long size;
+    private final String fingerprint;
+
+    //Null for a handle around an image that is already decoded
+    private final Decoder decoder;
+    private final CacheKey key;
+    private final Executor executor;
+
+    private final Object bitmapLock = new Object();
+    private Bitmap bitmap;
+    private final Map<String, byte[]> encoded = new HashMap<>();
+
+    ImageHandle(Uri uri, ImageMetadata metadata, CacheKey key, int rotation, Decoder decoder, Executor executor) {
+        this.uri = uri;
+        this.width = metadata.width;
+        this.height = metadata.height;
+        this.mimeType = metadata.mimeType;
+        this.orientation = metadata.orientation;
+        this.rotation = PickerMath.normalizeRotation(rotation);
+        this.size = key.getSize();
+        this.fingerprint = metadata.fingerprint;
+        this.decoder = decoder;
+        this.key = key;
+        this.executor = executor;
+    }
+
+    ImageHandle(Uri uri, Bitmap bitmap, Executor executor) {
+        this.uri = uri;
+        this.width = bitmap.getWidth();
+        this.height = bitmap.getHeight();
+        this.mimeType = null;
+        this.orientation = 0;
+        this.rotation = 0;
+        this.size = -1;
+        this.fingerprint = ImagePicker.getFingerprint(uri);
+        this.decoder = null;
+        this.key = null;
+        this.executor = executor;
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * @return Uri of the picked image
+     */
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @return Width of the source as stored, before orientation and rotation
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the source as stored, before orientation and rotation
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Mime type of the source or null if unknown
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return Exif orientation of the source in degrees
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return User rotation in degrees applied on top of the orientation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return Size of the source in bytes or -1 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Content fingerprint of the source or null if unknown
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return true if the output bitmap is already available without decoding
+     */
+    public boolean isDecoded() {
+        synchronized (bitmapLock) {
+            return bitmap != null;
+        }
+    }
+
+    /**
+     * Decode, resize and rotate the image on the first call. Blocks, don't call on the main thread.
+     *
+     * @return Output bitmap, the same instance on every call
+     * @throws IOException if the image can't be decoded
+     */
+    public Bitmap getBitmap() throws IOException {
+        synchronized (bitmapLock) {
+            if (bitmap != null)
+                return bitmap;
+
+            Decoded decoded;
+            try {
+                decoded = decoder.decode(uri, rotation, key, null, null, null);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception | OutOfMemoryError e) {
+                throw new IOException("Unable to decode " + uri, e);
+            }
+
+            if (decoded == null || decoded.dest == null)
+                throw new IOException("Unable to decode " + uri);
+
+            //Nothing rotates from this source later
+            if (decoded.source != null && decoded.source != decoded.dest)
+                BitmapPool.getInstance().put(decoded.source);
+
+            bitmap = decoded.dest;
+            return bitmap;
+        }
+    }
+
+    /**
+     * Compress the output bitmap on the first call for the format and quality. Blocks, don't call on the
+     * main thread.
+     *
+     * @param format  Compression format (JPEG, PNG or WEBP)
+     * @param quality Quality 0-100, ignored by lossless formats
+     * @return Encoded image, the same array on every call
+     * @throws IOException if the image can't be decoded or compressed
+     */
+    public byte[] getBytes(Bitmap.CompressFormat format, int quality) throws IOException {
+        Bitmap bitmap = getBitmap();
+
+        synchronized (encoded) {
+            String name = format + ":" + quality;
+            byte[] bytes = encoded.get(name);
+            if (bytes != null)
+                return bytes;
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            if (!bitmap.compress(format, quality, stream))
+                throw new IOException("Unable to compress image");
+
+            bytes = stream.toByteArray();
+            encoded.put(name, bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Decode in the background, the callback runs on the main thread
+     *
+     * @param callback Callback for the output bitmap
+     */
+    public void getBitmap(final Callback<Bitmap> callback) {
+        new PickerTask<Bitmap>() {
+            @Override
+            Bitmap doInBackground() throws Exception {
+                return getBitmap();
+            }
+
+            @Override
+            void onPostExecute(Bitmap result) {
+                if (result == null)
+                    callback.onFailed();
+                else
+                    callback.onLoaded(result);
+            }
+        }.execute(executor);
+    }
+
+    /**
+     * Decode and compress in the background, the callback runs on the main thread
+     *
+     * @param format   Compression format (JPEG, PNG or WEBP)
+     * @param quality  Quality 0-100, ignored by lossless formats
+     * @param callback Callback for the encoded image
+     */
+    public void getBytes(final Bitmap.CompressFormat format, final int quality, final Callback<byte[]> callback) {
+        new PickerTask<byte[]>() {
+            @Override
+            byte[] doInBackground() throws Exception {
+                return getBytes(format, quality);
+            }
+
+            @Override
+            void onPostExecute(byte[] result) {
+                if (result == null)
+                    callback.onFailed();
+                else
+                    callback.onLoaded(result);
+            }
+        }.execute(executor);
+    }
+
+    /**
+     * Result of a background load
+     *
+     * @param <T> Result type
+     */
+    public interface Callback<T> {
+        void onLoaded(T result);
+
+        void onFailed();
+    }
+}
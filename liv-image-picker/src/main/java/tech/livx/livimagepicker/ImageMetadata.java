@@ -0,0 +1,50 @@
+package tech.livx.livimagepicker;
+
+import android.util.LruCache;
+
+/**
+ * Header facts of a source image, read once per version of the source and cached by its signature
+ * (Uri, last modified and size) so repeated decodes and rotations skip the bounds and Exif passes.
+ */
+final class ImageMetadata {
+    private static final int MAX_ENTRIES = 64;
+
+    private static final LruCache<String, ImageMetadata> cache = new LruCache<>(MAX_ENTRIES);
+
+    final int width;
+    final int height;
+    final String mimeType;
+    //Exif orientation in degrees
+    final int orientation;
+    //Orientation is a rotation only, without mirroring
+    final boolean plainOrientation;
+    //Content fingerprint, null if it couldn't be read
+    final String fingerprint;
+
+    ImageMetadata(int width, int height, String mimeType, int orientation, boolean plainOrientation, String fingerprint) {
+        this.width = width;
+        this.height = height;
+        this.mimeType = mimeType;
+        this.orientation = orientation;
+        this.plainOrientation = plainOrientation;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param key Key of the source, any size or rotation
+     * @return Cached metadata or null if not read yet or the source can't be identified
+     */
+    static ImageMetadata get(CacheKey key) {
+        return key.hasSignature() ? cache.get(key.getSignature()) : null;
+    }
+
+    static void put(CacheKey key, ImageMetadata metadata) {
+        //Without a last modified time or size an edited source can't be told apart
+        if (key.hasSignature() && metadata.width > 0 && metadata.height > 0)
+            cache.put(key.getSignature(), metadata);
+    }
+
+    static void clear() {
+        cache.evictAll();
+    }
+}
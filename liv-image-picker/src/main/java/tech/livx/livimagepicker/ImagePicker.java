@@ -2,17 +2,14 @@ package tech.livx.livimagepicker;
 
 import android.Manifest;
 import android.app.Activity;
+import android.content.ClipData;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Parcelable;
@@ -21,12 +18,12 @@ import android.provider.MediaStore;
 import androidx.core.app.ActivityCompat;
 
 import java.io.File;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 
 /**
@@ -44,6 +41,7 @@ public class ImagePicker {
     //Random activity request code
     private static final int ACTIVITY_REQUEST = 536;
     private static final int PERMISSION_REQUEST = 163;
+    private static final long DEFAULT_CAPTURE_CACHE_SIZE = 50 * 1024 * 1024;
 
     //Output uri of selected image
     private android.net.Uri outputFileUri;
@@ -61,13 +59,38 @@ public class ImagePicker {
     private int rotation = 0;
     private boolean isCamera;
     private boolean exact;
-    private final Object lock = new Object();
-    private static boolean isRunning = false;
+    private boolean allowMultiple;
+    private BatchListener batchListener;
+    private MetricsListener metricsListener;
     private String galleryName;
     private int imageType;
-
-    //Thread instance
-    private DecodeUriAsync decodeUriAsync;
+    private boolean saveToGallery;
+    private long captureCacheSize = DEFAULT_CAPTURE_CACHE_SIZE;
+
+    //Sampled, unrotated source of the current image, reused for rotations
+    private Uri sourceUri;
+    private CacheKey sourceKey;
+    private Bitmap sourceBitmap;
+    private int sourceExifRotation;
+    private int sourceBakedRotation;
+    private String sourceFingerprint;
+    //Source that is also a delivered (and cached) image, never pooled
+    private boolean sourceShared;
+
+    //Sources replaced while a rotation was still drawing from them
+    private final List<Bitmap> retiredSources = new ArrayList<>();
+    private int rendersInFlight;
+
+    //Thread instances
+    private Executor executor = PickerExecutors.getDefault();
+    private final Decoder decoder;
+    private DecodeUriTask decodeTask;
+    private RotateTask rotateTask;
+    private BatchDecode batch;
+
+    //Last Uri written without decoding, its rotations are written the same way
+    private Uri passThroughUri;
+    private CacheKey passThroughKey;
 
     /**
      * Constructor
@@ -88,6 +111,90 @@ public class ImagePicker {
         this.output = output;
         this.exact = exact;
         this.galleryName = galleryName;
+        this.decoder = new Decoder(context, width, height, exact);
+    }
+
+    /**
+     * Constructor for several renditions of each image. A single decode sized for the largest rendition
+     * feeds all of them.
+     *
+     * @param context     Activity reference
+     * @param galleryName Name of photo gallery
+     * @param output      Renditions output callback
+     */
+    public ImagePicker(Activity context, String galleryName, OutputRenditions output) {
+        this(context, galleryName, output, output.getMaxWidth(), output.getMaxHeight(), false);
+        decoder.setMinSide(output.getMinSide());
+    }
+
+    /**
+     * Sets the executor used for decoding and rotating. Pickers don't share any lock so
+     * independent instances run in parallel on it.
+     *
+     * @param executor Executor, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Allows selecting several images from the gallery (API 18+). Selected images are decoded in parallel
+     * and each one is delivered to the Output as it finishes. Rotation applies to single picks only.
+     *
+     * @param allowMultiple true to allow multi select
+     * @param listener      Called once every selected image finished, with any failures. May be null.
+     */
+    public void setAllowMultiple(boolean allowMultiple, BatchListener listener) {
+        this.allowMultiple = allowMultiple;
+        this.batchListener = listener;
+    }
+
+    /**
+     * Sets the pixel format and memory budget used for decoding. Call before onCreate.
+     *
+     * @param options Decode options
+     */
+    public void setDecodeOptions(DecodeOptions options) {
+        decoder.setOptions(options);
+    }
+
+    /**
+     * Enables the on disk cache of processed images, stored in the app cache directory.
+     * Restoring after process death then reads the small processed image instead of decoding the original.
+     * Call before onCreate.
+     *
+     * @param enabled true to read and write the disk cache
+     */
+    public void setDiskCacheEnabled(boolean enabled) {
+        decoder.setDiskCacheEnabled(enabled);
+    }
+
+    /**
+     * Collect per stage timings and sizes of each picked image. Nothing is recorded while no listener is set.
+     *
+     * @param listener Listener called on the main thread once the output has the image, null to stop collecting
+     */
+    public void setMetricsListener(MetricsListener listener) {
+        this.metricsListener = listener;
+    }
+
+    /**
+     * Save camera captures to the public Pictures/galleryName folder, which needs the storage permission.
+     * The library doesn't declare it, apps saving to the gallery add WRITE_EXTERNAL_STORAGE to their manifest.
+     * By default captures go to app private storage and are deleted once the image is delivered and rotations
+     * no longer need the file.
+     *
+     * @param saveToGallery true to keep captures in the public gallery
+     */
+    public void setSaveToGallery(boolean saveToGallery) {
+        this.saveToGallery = saveToGallery;
+    }
+
+    /**
+     * @param maxBytes Maximum bytes of private captures kept on disk, oldest are deleted first. Defaults to 50 MB.
+     */
+    public void setCaptureCacheSize(long maxBytes) {
+        this.captureCacheSize = maxBytes;
     }
 
     /**
@@ -113,11 +220,12 @@ public class ImagePicker {
             imageType = savedInstanceState.getInt("imageType");
 
             //Decode saved Uri to provide Activity with a fresh instance of the Bitmap (after destruction)
-            if (outputFileUri != null) {
-                decodeUriAsync = new DecodeUriAsync();
-                decodeUriAsync.execute(outputFileUri, width, height, isCamera);
-            }
+            if (outputFileUri != null)
+                startDecode();
         }
+
+        //Expired private captures, except the ones just restored
+        CaptureStore.cleanup(context, outputFileUri, newFileUri);
     }
 
     /**
@@ -128,30 +236,72 @@ public class ImagePicker {
      * @param data        Result intent data
      */
     public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (isDestroyed())
+            return;
 
         if (requestCode == ACTIVITY_REQUEST) {
             if (resultCode == Activity.RESULT_OK) {
 
-                if (data == null || data.getData() == null) {
+                //Multi select returns the selection as ClipData
+                List<Uri> selected = getSelectedUris(data);
+                Uri previous = outputFileUri;
+                if (selected.size() > 1) {
+                    startBatch(selected);
+                    releaseCapture(previous);
+                    return;
+                }
+
+                if (selected.isEmpty()) {
                     isCamera = true;
                     outputFileUri = newFileUri;
                 } else {
                     isCamera = false;
-                    outputFileUri = data.getData();
+                    outputFileUri = selected.get(0);
                 }
 
-                //Attempt to decode the returned Uri in a background thread.
-                try {
-                    if (!isRunning && outputFileUri != null) {
-                        decodeUriAsync = new DecodeUriAsync();
-                        decodeUriAsync.execute(outputFileUri, width, height, isCamera);
-                    }
-                } catch (OutOfMemoryError e) {
-                    e.printStackTrace();
-                    output.onImageLoadFailed();
+                //Attempt to decode the returned Uri in a background thread, replacing any decode in flight.
+                if (outputFileUri != null)
+                    startDecode();
+
+                releaseCapture(previous);
+            }
+        }
+    }
+
+    private List<Uri> getSelectedUris(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        if (data == null)
+            return uris;
+
+        if (allowMultiple && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            ClipData clipData = data.getClipData();
+            if (clipData != null) {
+                for (int i = 0; i < clipData.getItemCount(); i++) {
+                    Uri uri = clipData.getItemAt(i).getUri();
+                    if (uri != null)
+                        uris.add(uri);
                 }
             }
         }
+
+        if (uris.isEmpty() && data.getData() != null)
+            uris.add(data.getData());
+
+        return uris;
+    }
+
+    /**
+     * Decode a multi select pick, each image is delivered to the Output as it finishes
+     */
+    private void startBatch(List<Uri> uris) {
+        cancelTasks();
+
+        //The selection isn't a single rotatable image
+        isCamera = false;
+        outputFileUri = null;
+
+        batch = new BatchDecode(decoder, executor, uris, output, batchListener, metricsListener);
+        batch.start();
     }
 
     /**
@@ -204,29 +354,42 @@ public class ImagePicker {
      * @param imagePickType Type of pick eg IMAGE_PICK_TYPE_CAMERA_ONLY
      */
     public void pickImage(int imagePickType) {
+        if (isDestroyed())
+            return;
 
         imageType = imagePickType;
 
-        //Check permissions
-        if (ActivityCompat.checkSelfPermission(context, Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED ||
-                ActivityCompat.checkSelfPermission(context, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(context,
-                    new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE, Manifest.permission.CAMERA}, PERMISSION_REQUEST);
+        //Check permissions, private captures don't need storage access
+        String[] permissions = saveToGallery
+                ? new String[]{Manifest.permission.WRITE_EXTERNAL_STORAGE, Manifest.permission.CAMERA}
+                : new String[]{Manifest.permission.CAMERA};
 
-            return;
+        for (String permission : permissions) {
+            if (ActivityCompat.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) {
+                ActivityCompat.requestPermissions(context, permissions, PERMISSION_REQUEST);
+                return;
+            }
         }
 
         //reset variables
         rotation = 0;
 
         //Insert a URI into the gallery for our new captured image and hold onto it
-
-        if (newFileUri == null)
-            newFileUri = Uri.fromFile(getOutputMediaFile());
+        if (saveToGallery) {
+            //Null if the gallery folder can't be created, e.g. without storage access
+            File file = newFileUri == null ? getOutputMediaFile() : null;
+            if (file != null)
+                newFileUri = Uri.fromFile(file);
+        } else if (newFileUri == null || newFileUri.equals(outputFileUri) || !CaptureStore.isCapture(context, newFileUri)) {
+            //A private capture is reused until it becomes the picked image
+            newFileUri = CaptureStore.create(context, captureCacheSize, outputFileUri);
+        }
 
         //Ensure that uri was able to be created
-        if (newFileUri == null)
+        if (newFileUri == null) {
+            output.onImageLoadFailed();
             return;
+        }
 
         switch (imagePickType) {
             case IMAGE_PICK_TYPE_CAMERA_AND_GALLERY: {
@@ -252,24 +415,23 @@ public class ImagePicker {
         // Capture intent
         Intent captureIntent = new Intent(android.provider.MediaStore.ACTION_IMAGE_CAPTURE);
 
-        //Query package manager for all activities that filter ACTION_IMAGE_CAPTURE intents
-        PackageManager packageManager = context.getPackageManager();
-        List<ResolveInfo> listCam = packageManager.queryIntentActivities(captureIntent, 0);
+        //All activities that filter ACTION_IMAGE_CAPTURE intents, cached between picks
+        List<ComponentName> listCam = CameraTargets.get(context);
 
         //Loop through all available activities, create intents for them and add them to our cameraIntents list
-        for (ResolveInfo res : listCam) {
-            String packageName = res.activityInfo.packageName;
+        for (ComponentName component : listCam) {
             Intent intent = new Intent(captureIntent);
-            intent.setComponent(new ComponentName(res.activityInfo.packageName, res.activityInfo.name));
-            intent.setPackage(packageName);
+            intent.setComponent(component);
+            intent.setPackage(component.getPackageName());
             intent.putExtra(MediaStore.EXTRA_OUTPUT, cameraOutputUri);
             cameraIntents.add(intent);
         }
 
+        //One grant per camera package, not per intent
+        CaptureStore.grant(context, cameraOutputUri, cameraIntents.toArray(new Intent[cameraIntents.size()]));
+
         // Filesystem.
-        Intent galleryIntent = new Intent();
-        galleryIntent.setType("image/*");
-        galleryIntent.setAction(Intent.ACTION_PICK);
+        Intent galleryIntent = createGalleryIntent();
 
         // Chooser of filesystem options.
         Intent chooserIntent = Intent.createChooser(galleryIntent, "Choose image");
@@ -283,7 +445,15 @@ public class ImagePicker {
     private Intent createGalleryIntent() {
         Intent intent = new Intent();
         intent.setType("image/*");
-        intent.setAction(Intent.ACTION_PICK);
+
+        //Galleries only honour multi select for GET_CONTENT
+        if (allowMultiple) {
+            intent.setAction(Intent.ACTION_GET_CONTENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        } else {
+            intent.setAction(Intent.ACTION_PICK);
+        }
 
         return intent;
     }
@@ -291,154 +461,497 @@ public class ImagePicker {
     private Intent createCameraIntent(Uri cameraOutputUri) {
         Intent intent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         intent.putExtra(MediaStore.EXTRA_OUTPUT, cameraOutputUri);
+        CaptureStore.grant(context, cameraOutputUri, intent);
 
         return intent;
     }
 
     /**
-     * Async class used to decode selected Uri
+     * Task used to decode selected Uri
      */
-    private class DecodeUriAsync extends AsyncTask<Object, Void, Bitmap> {
+    private class DecodeUriTask extends PickerTask<Decoded> {
+        private final Uri uri;
+        private final int rotation;
+        private final PickMetrics metrics;
+        private final SourceOutput sourceOutput;
+        private final OutputLazy lazyOutput;
+
+        //Key of the pick if known, so the provider isn't queried again for rotations
+        private CacheKey key;
+
+        //Set when the source was handed to the output without decoding
+        private boolean passedThrough;
+        private Object sourceResult;
+
+        //Set when only the header was read for a lazy output
+        private ImageHandle handle;
+
+        DecodeUriTask(Uri uri, int rotation) {
+            this.uri = uri;
+            this.rotation = rotation;
+            this.metrics = metricsListener != null ? new PickMetrics(uri, metricsListener) : null;
+            this.sourceOutput = output instanceof SourceOutput && ((SourceOutput) output).isSourcePreferred()
+                    ? (SourceOutput) output : null;
+            this.lazyOutput = output instanceof OutputLazy ? (OutputLazy) output : null;
+
+            if (sourceKey != null && sourceKey.isFor(uri))
+                key = sourceKey;
+            else if (passThroughKey != null && passThroughKey.isFor(uri))
+                key = passThroughKey;
+        }
+
         @Override
-        protected Bitmap doInBackground(Object... params) {
-            try {
-                synchronized (lock) {
-                    isRunning = true;
-
-                    //Retrieve parameters
-                    Uri uri = (Uri) params[0];
-                    float maxHeight = (float) params[1];
-                    float maxWidth = (float) params[2];
-                    boolean isCamera = (boolean) params[3];
-
-                    float maxSize = Math.max(maxHeight, maxWidth);
-
-                    //Load actual bounds of image
-                    BitmapFactory.Options preLoadOptions = new BitmapFactory.Options();
-                    preLoadOptions.inJustDecodeBounds = true;
-
-                    InputStream input = context.getContentResolver().openInputStream(uri);
-                    BitmapFactory.decodeStream(input, null, preLoadOptions);
-                    if (input != null)
-                        input.close();
-
-                    float height = preLoadOptions.outHeight;
-                    float width = preLoadOptions.outWidth;
-
-                    //Start off with a 1:1 ratio (Full size)
-                    int scaleFactor = 1;
-
-                    while (!(width / 2 < maxSize) || !(height / 2 < maxSize)) {
-                        width /= 2;
-                        height /= 2;
-                        scaleFactor *= 2;
-                    }
+        Decoded doInBackground() throws Exception {
+            long time = metrics != null ? System.nanoTime() : 0;
 
-                    //Calculate further required scaling
-                    float scale = 1.0f;
-                    if (exact) {
-                        if (width > height) {
-                            scale = maxHeight / height;
-                        } else {
-                            scale = maxWidth / width;
-                        }
-                    } else {
-                        //Not exact so scale by one more factor to ensure in max bounds.
-                        if (width > maxWidth || height > maxHeight) {
-                            width /= 2;
-                            height /= 2;
-                            scaleFactor *= 2;
-                        }
-                    }
+            //No pixel work at all when the source already has the right size
+            if (sourceOutput != null) {
+                if (key == null)
+                    key = decoder.createKey(uri, rotation);
 
-                    BitmapFactory.Options postLoadOptions = new BitmapFactory.Options();
-                    postLoadOptions.inSampleSize = scaleFactor;
+                time = record(PickMetrics.Stage.CACHE, time);
+                ImageMetadata metadata = decoder.getMetadata(uri, key);
+                time = record(PickMetrics.Stage.BOUNDS, time);
 
-                    //Load image with calculated scale factor
-                    input = context.getContentResolver().openInputStream(uri);
-                    Bitmap finalBitmap = BitmapFactory.decodeStream(input, null, postLoadOptions);
-                    if (input != null)
-                        input.close();
+                passedThrough = decoder.canPassThrough(metadata);
+                if (passedThrough)
+                    recordMetadata(metadata);
+            }
 
-                    if (!exact) {
-                        maxHeight = height;
-                        maxWidth = width;
-                    }
+            if (passedThrough) {
+                sourceResult = sourceOutput.writeSource(decoder.getContentResolver(), uri, rotation);
+                record(PickMetrics.Stage.ENCODE, time);
+                return null;
+            }
 
-                    float left = ((maxWidth - (scale * width)) / 2);
-                    float top = ((maxHeight - (scale * height)) / 2);
+            //Header only, the handle decodes when asked
+            if (lazyOutput != null) {
+                if (key == null)
+                    key = decoder.createKey(uri, rotation);
 
-                    //Create final bitmap
-                    Matrix matrix = new Matrix();
+                time = record(PickMetrics.Stage.CACHE, time);
+                ImageMetadata metadata = decoder.getMetadata(uri, key);
+                record(PickMetrics.Stage.BOUNDS, time);
 
-                    //Apply scaling calculation
-                    matrix.setTranslate(-(width / 2), -(height / 2));
+                if (metadata != null) {
+                    recordMetadata(metadata);
+                    handle = new ImageHandle(uri, metadata, key, rotation, decoder, lazyOutput.getExecutor());
+                }
 
-                    //Calculate any required rotations
-                    float tempRotation;
-                    if (isCamera) {
-                        tempRotation = rotation + ExifUtil.getExifOrientationFromCamera(context, uri);
-                    } else {
-                        tempRotation = rotation + ExifUtil.getExifOrientationFromGallery(context, uri);
-                    }
+                return null;
+            }
 
-                    matrix.postRotate(tempRotation);
-
-                    //Crashes sometimes by settings width and height to 0
-                    if (maxWidth == 0 || maxHeight == 0)
-                        return null;
-
-                    Bitmap dest;
-                    if ((tempRotation / 90) % 2 != 0) {
-                        dest = Bitmap.createBitmap((int) maxHeight, (int) maxWidth, Bitmap.Config.ARGB_8888);
-                        matrix.postTranslate(height / 2, width / 2);
-                        matrix.postScale(scale, scale);
-                        matrix.postTranslate(top, left);
-                    } else {
-                        dest = Bitmap.createBitmap((int) maxWidth, (int) maxHeight, Bitmap.Config.ARGB_8888);
-                        matrix.postTranslate(width / 2, height / 2);
-                        matrix.postScale(scale, scale);
-                        matrix.postTranslate(left, top);
+            Decoder.PreviewCallback preview = null;
+            if (output instanceof OutputPreview) {
+                preview = new Decoder.PreviewCallback() {
+                    @Override
+                    public void onPreview(final Bitmap bitmap) {
+                        publish(new Runnable() {
+                            @Override
+                            public void run() {
+                                //Dropped if the full image already won the race
+                                if (decodeTask == DecodeUriTask.this)
+                                    ((OutputPreview) output).onPreview(uri, bitmap);
+                            }
+                        });
                     }
+                };
+            }
 
-                    Canvas canvas = new Canvas(dest);
+            return decoder.decode(uri, rotation, key, this, preview, metrics);
+        }
 
-                    //Draw final bitmap
-                    assert finalBitmap != null;
-                    canvas.drawBitmap(finalBitmap, matrix, new Paint());
-                    finalBitmap.recycle();
-                    return dest;
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                return null;
+        private long record(PickMetrics.Stage stage, long start) {
+            return metrics != null ? metrics.record(stage, start) : 0;
+        }
+
+        private void recordMetadata(ImageMetadata metadata) {
+            if (metrics == null || metadata == null)
+                return;
+
+            metrics.setSource(metadata.width, metadata.height);
+            metrics.setFingerprint(metadata.fingerprint);
+        }
+
+        @Override
+        void onPostExecute(Decoded decoded) {
+            decodeTask = null;
+            if (passedThrough) {
+                onPassedThrough();
+                return;
+            }
+
+            if (lazyOutput != null) {
+                onHandle();
+                return;
+            }
+
+            if (decoded == null) {
+                output.onImageLoadFailed();
+                return;
             }
+
+            //Keep the sampled source so rotations don't need to decode again
+            if (decoded.source != null || !decoded.uri.equals(sourceUri))
+                setSource(decoded);
+
+            deliver(decoded);
+            releaseDeliveredCapture();
+        }
+
+        private void onPassedThrough() {
+            passThroughUri = uri;
+            passThroughKey = key;
+
+            //Picked again or rotated while writing, only the latest state is delivered
+            if (!uri.equals(outputFileUri) || rotation != ImagePicker.this.rotation) {
+                startDecode();
+                return;
+            }
+
+            sourceOutput.onSourceWritten(uri, sourceResult);
+            if (metrics != null && sourceResult != null)
+                metrics.report();
+        }
+
+        private void onHandle() {
+            if (handle == null) {
+                output.onImageLoadFailed();
+                return;
+            }
+
+            //Picked again or rotated while reading the header, only the latest state is delivered
+            if (!uri.equals(outputFileUri) || rotation != ImagePicker.this.rotation) {
+                startDecode();
+                return;
+            }
+
+            lazyOutput.onImageLoaded(uri, handle);
+            if (metrics != null)
+                metrics.report();
+        }
+    }
+
+    /**
+     * Task used to rotate the cached source bitmap
+     */
+    private class RotateTask extends PickerTask<Decoded> {
+        private final Decoded decoded;
+
+        RotateTask(Decoded decoded) {
+            this.decoded = decoded;
+            rendersInFlight++;
         }
 
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            isRunning = false;
-            if (bitmap != null)
-                output.process(outputFileUri, bitmap);
-            else
+        Decoded doInBackground() {
+            return decoder.transform(decoded);
+        }
+
+        @Override
+        void onPostExecute(Decoded result) {
+            rotateTask = null;
+            onRenderFinished();
+            if (result == null) {
                 output.onImageLoadFailed();
+                return;
+            }
+
+            deliver(result);
+        }
+
+        @Override
+        void onCancelled(Decoded result) {
+            onRenderFinished();
+        }
+    }
+
+    /**
+     * Replace the cached source bitmap used for rotations
+     */
+    private void setSource(Decoded decoded) {
+        if (sourceBitmap != decoded.source && !sourceShared)
+            retireSource(sourceBitmap);
+
+        sourceUri = decoded.uri;
+        sourceKey = decoded.key;
+        sourceBitmap = decoded.source;
+        sourceExifRotation = decoded.exifRotation;
+        sourceBakedRotation = decoded.bakedRotation;
+        sourceFingerprint = decoded.fingerprint;
+        sourceShared = decoded.source != null && decoded.source == decoded.dest;
+    }
+
+    /**
+     * Pool a source bitmap once no rotation, including cancelled ones still running, is drawing from it
+     */
+    private void retireSource(Bitmap bitmap) {
+        if (bitmap == null)
+            return;
+
+        if (rendersInFlight == 0)
+            poolSource(bitmap);
+        else
+            retiredSources.add(bitmap);
+    }
+
+    private void onRenderFinished() {
+        rendersInFlight--;
+        if (rendersInFlight == 0) {
+            for (Bitmap bitmap : retiredSources)
+                poolSource(bitmap);
+
+            retiredSources.clear();
+        }
+    }
+
+    /**
+     * Pool a retired source unless the cache can still hand it out, e.g. as the output of a rotation
+     * that cancelled the Exif rotation
+     */
+    private static void poolSource(Bitmap bitmap) {
+        if (!BitmapCache.getInstance().contains(bitmap))
+            BitmapPool.getInstance().put(bitmap);
+    }
+
+    /**
+     * Cancel in flight work, used when a newer request replaces it
+     */
+    private void cancelTasks() {
+        if (batch != null) {
+            batch.cancel();
+            batch = null;
+        }
+
+        if (decodeTask != null) {
+            decodeTask.cancel();
+            decodeTask = null;
+        }
+
+        if (rotateTask != null) {
+            rotateTask.cancel();
+            rotateTask = null;
+        }
+    }
+
+    /**
+     * Wraps onDestroy of Activity. Cancels work in flight, returns the rotation source to the pool and drops
+     * the references to the Activity and Output so tasks still finishing in the background can't keep them
+     * alive. The picker can't be used afterwards, create a new one for the new Activity.
+     */
+    public void onDestroy() {
+        cancelTasks();
+
+        //Captures only outlive the Activity for a recreation
+        if (context != null && context.isFinishing()) {
+            CaptureStore.release(context, outputFileUri);
+            CaptureStore.release(context, newFileUri);
+        }
+
+        if (!sourceShared)
+            retireSource(sourceBitmap);
+
+        sourceUri = null;
+        sourceKey = null;
+        sourceBitmap = null;
+        sourceFingerprint = null;
+        sourceShared = false;
+        passThroughUri = null;
+        passThroughKey = null;
+
+        context = null;
+        output = null;
+        batchListener = null;
+        metricsListener = null;
+    }
+
+    /**
+     * Delete a private capture that is no longer the picked image
+     */
+    private void releaseCapture(Uri uri) {
+        if (uri != null && !uri.equals(outputFileUri))
+            CaptureStore.release(context, uri);
+    }
+
+    /**
+     * Delete the private capture of the picked image once rotations render from the kept source. Restoring
+     * after a recreation is served from the memory or disk cache while they still hold the image.
+     */
+    private void releaseDeliveredCapture() {
+        if (sourceBitmap != null && outputFileUri != null && outputFileUri.equals(sourceUri))
+            CaptureStore.release(context, outputFileUri);
+    }
+
+    private boolean isDestroyed() {
+        return context == null;
+    }
+
+    /**
+     * Decode the current Uri, replacing any work in flight
+     */
+    private void startDecode() {
+        cancelTasks();
+
+        decodeTask = new DecodeUriTask(outputFileUri, rotation);
+        decodeTask.execute(executor);
+    }
+
+    /**
+     * Hand a decoded image to the output, or render again if rotations were requested in the meantime
+     */
+    private void deliver(Decoded decoded) {
+        //A newer image was picked while decoding, drop the result and decode the new one
+        if (!decoded.uri.equals(outputFileUri)) {
+            renderRotation();
+            return;
+        }
+
+        //Rotate taps arrived while rendering, only the latest rotation is delivered
+        if (decoded.rotation != rotation) {
+            renderRotation();
+            return;
+        }
+
+        //The output may be the source itself when the rotations cancel out, it's the app's from now on
+        if (decoded.dest != null && decoded.dest == sourceBitmap) {
+            sourceShared = true;
+
+            //Renditions pool the decode once done, rotations decode again instead of drawing from it
+            if (output instanceof OutputRenditions) {
+                sourceBitmap = null;
+                sourceShared = false;
+            }
+        }
+
+        process(output, decoded);
+    }
+
+    /**
+     * Hand a result to the output and report its metrics, after the encode for outputs that encode
+     */
+    static void process(Output output, Decoded decoded) {
+        if (decoded.metrics != null)
+            decoded.metrics.setFingerprint(decoded.fingerprint);
+
+        if (decoded.metrics == null) {
+            output.process(decoded.uri, decoded.dest);
+        } else if (output instanceof EncodingOutput) {
+            ((EncodingOutput) output).process(decoded.uri, decoded.dest, decoded.metrics);
+        } else {
+            output.process(decoded.uri, decoded.dest);
+            decoded.metrics.report();
         }
     }
 
+    /**
+     * Render the current rotation from the cached source, taps are coalesced while a render is in flight
+     */
+    private void renderRotation() {
+        if (decodeTask != null || rotateTask != null)
+            return;
+
+        if (passThroughUri != null && passThroughUri.equals(outputFileUri)) {
+            startDecode();
+            return;
+        }
+
+        if (sourceKey != null && sourceUri.equals(outputFileUri)) {
+            Decoded decoded = new Decoded();
+            decoded.uri = sourceUri;
+            decoded.key = sourceKey.withRotation(rotation);
+            decoded.source = sourceBitmap;
+            decoded.exifRotation = sourceExifRotation;
+            decoded.bakedRotation = sourceBakedRotation;
+            decoded.rotation = rotation;
+            decoded.fingerprint = sourceFingerprint;
+
+            //Rotations already rendered are served straight from the cache
+            decoded.dest = BitmapCache.getInstance().get(decoded.key);
+            if (decoded.dest != null) {
+                deliver(decoded);
+                return;
+            }
+
+            if (sourceBitmap != null) {
+                rotateTask = new RotateTask(decoded);
+                rotateTask.execute(executor);
+                return;
+            }
+        }
+
+        startDecode();
+    }
+
     /**
      * Rotates image incrementally
      */
     public void rotateImage() {
 
-        if (outputFileUri != null) {
+        if (outputFileUri != null && !isDestroyed()) {
             rotation += 90;
-            if (!isRunning) {
-                decodeUriAsync = new DecodeUriAsync();
-                decodeUriAsync.execute(outputFileUri, width, height, isCamera);
-            }
+            renderRotation();
         }
     }
 
+    /**
+     * Do the one off work of a first pick ahead of time: resolve the camera apps for the chooser, start
+     * the worker threads and allocate the header buffer. Call early, e.g. in onCreate, safe from any thread.
+     *
+     * @param context Any context
+     */
+    public static void prewarm(Context context) {
+        prewarm(context, 0, 0);
+    }
+
+    /**
+     * Prewarm and also pool a destination bitmap for outputs of the given size
+     *
+     * @param context Any context
+     * @param width   Expected output width or 0
+     * @param height  Expected output height or 0
+     */
+    public static void prewarm(Context context, final int width, final int height) {
+        CameraTargets.prewarm(context);
+        PickerExecutors.prestart();
+
+        PickerExecutors.getDefault().execute(new Runnable() {
+            @Override
+            public void run() {
+                RewindableInputStream.preallocate(Decoder.HEADER_BUFFER_SIZE);
+
+                if (width > 0 && height > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                    BitmapPool.getInstance().put(Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888));
+            }
+        });
+    }
+
+    /**
+     * @return Process wide cache of decoded images shared by all pickers
+     */
+    public static BitmapCache getBitmapCache() {
+        return BitmapCache.getInstance();
+    }
+
+    /**
+     * @return Process wide pool of reusable bitmaps with allocation and reuse statistics
+     */
+    public static BitmapPool getBitmapPool() {
+        return BitmapPool.getInstance();
+    }
+
+    /**
+     * Content fingerprint of a picked image, equal for the same photo picked through different Uris.
+     * Available once the image was delivered to the output. Results of OutputSink, OutputSized,
+     * OutputRenditions and OutputLazy as well as PickMetrics carry it too, this lookup is for Bitmap and
+     * Base64 outputs.
+     *
+     * @param uri Uri passed to the output
+     * @return Hex fingerprint or null if the Uri wasn't read in this process
+     */
+    public static String getFingerprint(Uri uri) {
+        return uri != null ? Fingerprint.forUri(uri) : null;
+    }
+
     /*
      * returning image / video
      */
@@ -0,0 +1,96 @@
+package tech.livx.livimagepicker;
+
+import java.util.Arrays;
+
+/**
+ * MetricsListener keeping the most recent stage timings in memory for percentile reports
+ */
+public class MetricsHistogram implements MetricsListener {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final long[][] samples;
+    private final int capacity;
+    private int count;
+    private int next;
+
+    public MetricsHistogram() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of picks kept, older picks are dropped
+     */
+    public MetricsHistogram(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+
+        this.capacity = capacity;
+        this.samples = new long[PickMetrics.Stage.values().length][capacity];
+    }
+
+    @Override
+    public synchronized void onPickMetrics(PickMetrics metrics) {
+        for (PickMetrics.Stage stage : PickMetrics.Stage.values())
+            samples[stage.ordinal()][next] = metrics.getStageNanos(stage);
+
+        next = (next + 1) % capacity;
+        count = Math.min(count + 1, capacity);
+    }
+
+    /**
+     * @param stage      Pipeline stage
+     * @param percentile Percentile between 0 and 100
+     * @return Stage time at the percentile in nanoseconds, 0 if nothing was recorded
+     */
+    public synchronized long getPercentile(PickMetrics.Stage stage, double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+
+        if (count == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(samples[stage.ordinal()], count);
+        Arrays.sort(sorted);
+
+        //Nearest rank
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public long getP50(PickMetrics.Stage stage) {
+        return getPercentile(stage, 50);
+    }
+
+    public long getP95(PickMetrics.Stage stage) {
+        return getPercentile(stage, 95);
+    }
+
+    public long getP99(PickMetrics.Stage stage) {
+        return getPercentile(stage, 99);
+    }
+
+    /**
+     * @return Number of picks currently kept
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        next = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("MetricsHistogram{count=").append(count);
+        for (PickMetrics.Stage stage : PickMetrics.Stage.values()) {
+            builder.append(", ").append(stage.name().toLowerCase())
+                    .append("=p50 ").append(getP50(stage) / 1000)
+                    .append("us/p95 ").append(getP95(stage) / 1000)
+                    .append("us/p99 ").append(getP99(stage) / 1000).append("us");
+        }
+
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,8 @@
+package tech.livx.livimagepicker;
+
+/**
+ * Receives the metrics of each picked image, called on the main thread once the output has the image
+ */
+public interface MetricsListener {
+    void onPickMetrics(PickMetrics metrics);
+}
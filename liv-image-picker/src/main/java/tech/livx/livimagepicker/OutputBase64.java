@@ -2,35 +2,190 @@ package tech.livx.livimagepicker;
 
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Output image as Base64 String
  */
-public abstract class OutputBase64 implements Output<String> {
+public abstract class OutputBase64 implements Output<String>, EncodingOutput {
+    //Rough compressed bytes per pixel used to presize the buffer
+    private static final float LOSSLESS_RATIO = 2f;
+    private static final float LOSSY_RATIO = 0.5f;
+
+    //Last encode of each output bitmap, duplicate picks are served the same cached bitmap
+    private static final Map<Bitmap, Encoded> encoded = new WeakHashMap<>();
+
+    private Executor executor;
+    //Runs the encodes of this output one after the other on the executor
+    private Executor serialExecutor;
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
+    private int quality = 100;
+
+    /**
+     * Encodes of one output run one at a time so images, e.g. successive rotations, are delivered in
+     * the order they were handed over and a stale one can't arrive last.
+     *
+     * @param executor Executor used for encoding, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        this.serialExecutor = null;
+    }
+
+    private Executor getSerialExecutor() {
+        if (serialExecutor == null)
+            serialExecutor = PickerExecutors.serial(executor != null ? executor : PickerExecutors.getDefault());
+
+        return serialExecutor;
+    }
+
+    /**
+     * Set the format the image is compressed in before encoding, defaults to PNG
+     *
+     * @param format  Compression format (JPEG, PNG or WEBP)
+     * @param quality Quality 0-100, ignored by lossless formats
+     */
+    public void setCompressFormat(Bitmap.CompressFormat format, int quality) {
+        if (format == null)
+            throw new IllegalArgumentException("Format must not be null");
+
+        if (quality < 0 || quality > 100)
+            throw new IllegalArgumentException("Quality must be between 0 and 100");
+
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * @return Compression format
+     */
+    public Bitmap.CompressFormat getCompressFormat() {
+        return format;
+    }
+
+    /**
+     * @return Compression quality
+     */
+    public int getQuality() {
+        return quality;
+    }
+
     @Override
-    public void process(final Uri uri,Bitmap bitmap) {
-        new AsyncTask<Bitmap, Void, String>() {
-            @Override
-            protected String doInBackground(Bitmap... params) {
+    public void process(Uri uri, Bitmap bitmap) {
+        process(uri, bitmap, null);
+    }
 
-                //Create Byte Array Stream from image
-                ByteArrayOutputStream stream = new ByteArrayOutputStream();
-                params[0].compress(Bitmap.CompressFormat.PNG, 100, stream);
+    @Override
+    public void process(final Uri uri, final Bitmap bitmap, final PickMetrics metrics) {
+        final Bitmap.CompressFormat format = this.format;
+        final int quality = this.quality;
 
-                //Encode Stream as Base64 String
-                return Base64.encodeToString(stream.toByteArray(),
-                        Base64.NO_WRAP);
+        new PickerTask<String>() {
+            @Override
+            String doInBackground() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    return encode(bitmap, format, quality);
+                } finally {
+                    if (metrics != null)
+                        metrics.record(PickMetrics.Stage.ENCODE, start);
+                }
             }
 
             @Override
-            protected void onPostExecute(String s) {
-                super.onPostExecute(s);
-                onImageLoaded(uri,s);
+            void onPostExecute(String s) {
+                if (metrics != null)
+                    metrics.report();
+
+                if (s == null)
+                    onImageLoadFailed();
+                else
+                    onImageLoaded(uri, s);
             }
-        }.execute(bitmap);
+        }.execute(getSerialExecutor());
+    }
+
+    /**
+     * Compress straight into a Base64 encoder so the compressed bytes are never held as a separate array
+     */
+    static String encode(Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws Exception {
+        synchronized (encoded) {
+            Encoded previous = encoded.get(bitmap);
+            String string = previous != null ? previous.get(bitmap, format, quality) : null;
+            if (string != null)
+                return string;
+        }
+
+        String string = compress(bitmap, format, quality);
+
+        synchronized (encoded) {
+            encoded.put(bitmap, new Encoded(bitmap, format, quality, string));
+        }
+
+        return string;
+    }
+
+    private static String compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality) throws Exception {
+        float ratio = format == Bitmap.CompressFormat.PNG ? LOSSLESS_RATIO : LOSSY_RATIO;
+        int estimate = (int) (bitmap.getWidth() * bitmap.getHeight() * ratio);
+
+        //Base64 takes 4 characters per 3 bytes
+        Base64Buffer buffer = new Base64Buffer(estimate / 3 * 4 + 4);
+        Base64OutputStream stream = new Base64OutputStream(buffer, Base64.NO_WRAP);
+        try {
+            if (!bitmap.compress(format, quality, stream))
+                throw new IOException("Unable to compress image");
+        } finally {
+            stream.close();
+        }
+
+        return buffer.toAsciiString();
+    }
+
+    /**
+     * Encoded String kept softly so memoised encodes give way under memory pressure
+     */
+    private static class Encoded {
+        //Changes when the pixels are modified or the bitmap is reused from the pool
+        private final int generation;
+        private final Bitmap.CompressFormat format;
+        private final int quality;
+        private final SoftReference<String> string;
+
+        Encoded(Bitmap bitmap, Bitmap.CompressFormat format, int quality, String string) {
+            this.generation = bitmap.getGenerationId();
+            this.format = format;
+            this.quality = quality;
+            this.string = new SoftReference<>(string);
+        }
+
+        String get(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+            if (generation != bitmap.getGenerationId() || this.format != format || this.quality != quality)
+                return null;
+
+            return string.get();
+        }
+    }
+
+    /**
+     * Byte buffer that builds the String from its own array instead of a copy
+     */
+    private static class Base64Buffer extends ByteArrayOutputStream {
+
+        Base64Buffer(int size) {
+            super(size);
+        }
+
+        String toAsciiString() throws Exception {
+            return new String(buf, 0, count, "US-ASCII");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Output delivering an ImageHandle right after the header is read. Pixels are only decoded and encoded
+ * when the handle is asked for them. Multi select picks and images already in memory arrive as decoded
+ * handles.
+ */
+public abstract class OutputLazy implements Output<ImageHandle> {
+    private Executor executor;
+
+    /**
+     * @param executor Executor used by the handles for background loads, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    Executor getExecutor() {
+        return executor != null ? executor : PickerExecutors.getDefault();
+    }
+
+    @Override
+    public void process(Uri uri, Bitmap bitmap) {
+        onImageLoaded(uri, new ImageHandle(uri, bitmap, getExecutor()));
+    }
+}
@@ -0,0 +1,12 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * Optional interface for an Output that wants a quick low resolution preview while the full image decodes.
+ * The preview is correctly rotated and is never delivered after the full image.
+ */
+public interface OutputPreview {
+    void onPreview(Uri uri, Bitmap preview);
+}
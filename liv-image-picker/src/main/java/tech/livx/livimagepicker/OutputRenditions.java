@@ -0,0 +1,202 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Output several renditions of the image from a single decode. Use with the ImagePicker constructor taking
+ * an OutputRenditions so the decode is sized for the largest rendition. Renditions are produced in
+ * parallel from the shared decode and delivered together in declaration order. The output owns the shared
+ * decode and returns it to the pool after the last rendition, unless a rendition is the decode itself or the
+ * memory cache still holds it.
+ */
+public abstract class OutputRenditions implements Output<List<Rendition.Image>>, EncodingOutput {
+    private final List<Rendition> renditions;
+
+    private Executor executor;
+    //Runs the encodes of this output one after the other on the executor
+    private Executor serialExecutor;
+
+    /**
+     * @param renditions Renditions to produce for each image
+     */
+    public OutputRenditions(Rendition... renditions) {
+        if (renditions.length == 0)
+            throw new IllegalArgumentException("At least one rendition is required");
+
+        this.renditions = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(renditions)));
+    }
+
+    /**
+     * Encodes of one output run one at a time so images, e.g. successive rotations, are delivered in
+     * the order they were handed over and a stale one can't arrive last.
+     *
+     * @param executor Executor coordinating the renditions, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        this.serialExecutor = null;
+    }
+
+    private Executor getSerialExecutor() {
+        if (serialExecutor == null)
+            serialExecutor = PickerExecutors.serial(executor != null ? executor : PickerExecutors.getDefault());
+
+        return serialExecutor;
+    }
+
+    public List<Rendition> getRenditions() {
+        return renditions;
+    }
+
+    /**
+     * Width the shared decode fits in. Exact renditions are cropped from the decode so they need their
+     * larger side in both directions to be covered for any aspect ratio, see getMinSide.
+     */
+    float getMaxWidth() {
+        int max = 0;
+        for (Rendition rendition : renditions)
+            max = Math.max(max, rendition.isExact() ? Math.max(rendition.getWidth(), rendition.getHeight()) : rendition.getWidth());
+
+        return max;
+    }
+
+    /**
+     * @see #getMaxWidth()
+     */
+    float getMaxHeight() {
+        int max = 0;
+        for (Rendition rendition : renditions)
+            max = Math.max(max, rendition.isExact() ? Math.max(rendition.getWidth(), rendition.getHeight()) : rendition.getHeight());
+
+        return max;
+    }
+
+    /**
+     * Shortest side the shared decode keeps. A fit decode of a non square source would leave its short side
+     * below an exact rendition, which would then be scaled up, so the decode also covers a square of the
+     * largest exact dimension.
+     */
+    float getMinSide() {
+        int min = 0;
+        for (Rendition rendition : renditions) {
+            if (rendition.isExact())
+                min = Math.max(min, Math.max(rendition.getWidth(), rendition.getHeight()));
+        }
+
+        return min;
+    }
+
+    @Override
+    public void process(Uri uri, Bitmap bitmap) {
+        process(uri, bitmap, null);
+    }
+
+    @Override
+    public void process(final Uri uri, final Bitmap bitmap, final PickMetrics metrics) {
+        final String fingerprint = Fingerprint.forUri(uri);
+
+        new PickerTask<List<Rendition.Image>>() {
+            @Override
+            List<Rendition.Image> doInBackground() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    List<Rendition.Image> images = renderAll(bitmap);
+                    release(bitmap, images);
+                    return images;
+                } finally {
+                    if (metrics != null)
+                        metrics.record(PickMetrics.Stage.ENCODE, start);
+                }
+            }
+
+            private List<Rendition.Image> renderAll(final Bitmap bitmap) throws Exception {
+                List<Future<Rendition.Image>> futures = new ArrayList<>(renditions.size());
+                for (final Rendition rendition : renditions) {
+                    futures.add(PickerExecutors.getEncoder().submit(new Callable<Rendition.Image>() {
+                        @Override
+                        public Rendition.Image call() throws Exception {
+                            return render(bitmap, rendition, fingerprint);
+                        }
+                    }));
+                }
+
+                List<Rendition.Image> images = new ArrayList<>(futures.size());
+                for (Future<Rendition.Image> future : futures)
+                    images.add(future.get());
+
+                return images;
+            }
+
+            @Override
+            void onPostExecute(List<Rendition.Image> images) {
+                if (metrics != null)
+                    metrics.report();
+
+                if (images == null)
+                    onImageLoadFailed();
+                else
+                    onImageLoaded(uri, images);
+            }
+        }.execute(getSerialExecutor());
+    }
+
+    /**
+     * Pool the shared decode once every rendition is done with it. Nothing is released after a failure,
+     * other renditions may still be reading the decode.
+     */
+    static void release(Bitmap source, List<Rendition.Image> images) {
+        if (source == null)
+            return;
+
+        for (Rendition.Image image : images) {
+            if (image.getBitmap() == source)
+                return;
+        }
+
+        //A cached decode can still be handed out, e.g. for the same pick in another picker
+        if (!BitmapCache.getInstance().contains(source))
+            BitmapPool.getInstance().put(source);
+    }
+
+    /**
+     * Scale the shared decode to one rendition. The shared decode is only read here, see release.
+     */
+    static Rendition.Image render(Bitmap source, Rendition rendition, String fingerprint) throws Exception {
+        float width = rendition.getWidth();
+        float height = rendition.getHeight();
+
+        //Fit inside the box, never scaling up, then draw at exactly that size
+        if (!rendition.isExact()) {
+            float scale = Math.min(1, PickerMath.getFitScale(source.getWidth(), source.getHeight(), width, height));
+            width = Math.max(1, Math.round(source.getWidth() * scale));
+            height = Math.max(1, Math.round(source.getHeight() * scale));
+        }
+
+        Bitmap scaled = BitmapTransform.transform(source, width, height, true, 0);
+        if (scaled == null)
+            throw new IllegalStateException("Empty rendition " + rendition.getName());
+
+        //Like OutputBitmap, a rendition the size of the decode is the decode itself
+        if (rendition.getCompressFormat() == null)
+            return new Rendition.Image(rendition, scaled, null, fingerprint);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(scaled.getWidth() * scaled.getHeight() / 2);
+        scaled.compress(rendition.getCompressFormat(), rendition.getQuality(), stream);
+
+        //The intermediate is done with once encoded
+        if (scaled != source)
+            BitmapPool.getInstance().put(scaled);
+
+        return new Rendition.Image(rendition, null, stream.toByteArray(), fingerprint);
+    }
+}
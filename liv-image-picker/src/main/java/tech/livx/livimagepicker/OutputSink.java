@@ -0,0 +1,389 @@
+package tech.livx.livimagepicker;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output image compressed straight into a file, OutputStream or channel. The encoded image is written
+ * in bounded chunks and never held in memory as a whole.
+ * A file is rewritten with each delivered image, e.g. after a rotation. Streams and channels can't be
+ * rewound so they only take the first image, later ones (rotations, restores, further picks) are
+ * rejected through onImageLoadFailed. Use a file target when offering rotation or picking multiple.
+ * Writes of one sink never overlap and run in the order the images were handed over, so the file
+ * always ends up holding the latest image. A write overtaken by a newer one is dropped without a callback.
+ */
+public abstract class OutputSink implements Output<OutputSink.Result>, EncodingOutput, SourceOutput {
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    //Returned by a write skipped because a newer image already reached the target
+    private static final Result SUPERSEDED = new Result(null, 0, 0, null);
+
+    private final File file;
+    private final OutputStream stream;
+    private final WritableByteChannel channel;
+
+    private Executor executor;
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+    private int quality = 90;
+    private boolean losslessRotation;
+
+    //Set once a stream or channel target has been handed an image
+    private boolean written;
+
+    //Runs the writes of this sink one after the other on the executor
+    private Executor serialExecutor;
+    //Held while writing the target
+    private final Object lock = new Object();
+    //Generation of each write, taken when it is handed over
+    private final AtomicInteger generations = new AtomicInteger();
+    //Generation the target holds, guarded by lock
+    private int writtenGeneration;
+
+    /**
+     * @param file File to write, replaced if it exists
+     */
+    public OutputSink(File file) {
+        this(file, null, null);
+    }
+
+    /**
+     * @param stream Stream to write once, flushed but left open
+     */
+    public OutputSink(OutputStream stream) {
+        this(null, stream, null);
+    }
+
+    /**
+     * @param channel Channel to write once, left open
+     */
+    public OutputSink(WritableByteChannel channel) {
+        this(null, null, channel);
+    }
+
+    private OutputSink(File file, OutputStream stream, WritableByteChannel channel) {
+        if (file == null && stream == null && channel == null)
+            throw new IllegalArgumentException("Target must not be null");
+
+        this.file = file;
+        this.stream = stream;
+        this.channel = channel;
+    }
+
+    /**
+     * @param executor Executor used for writing, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        this.serialExecutor = null;
+    }
+
+    private Executor getSerialExecutor() {
+        if (serialExecutor == null)
+            serialExecutor = PickerExecutors.serial(executor != null ? executor : PickerExecutors.getDefault());
+
+        return serialExecutor;
+    }
+
+    /**
+     * Set the format the image is written in, defaults to JPEG at 90
+     *
+     * @param format  Compression format (JPEG, PNG or WEBP)
+     * @param quality Quality 0-100, ignored by lossless formats
+     */
+    public void setCompressFormat(Bitmap.CompressFormat format, int quality) {
+        if (format == null)
+            throw new IllegalArgumentException("Format must not be null");
+
+        if (quality < 0 || quality > 100)
+            throw new IllegalArgumentException("Quality must be between 0 and 100");
+
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * Copy JPEG sources that need no resize to the file as they are, applying rotations through the Exif
+     * orientation instead of decoding and compressing again. Only applies to a File target.
+     *
+     * @param losslessRotation true to copy sources losslessly when possible
+     */
+    public void setLosslessRotation(boolean losslessRotation) {
+        this.losslessRotation = losslessRotation;
+    }
+
+    @Override
+    public boolean isSourcePreferred() {
+        return losslessRotation && file != null;
+    }
+
+    @Override
+    public Object writeSource(ContentResolver resolver, Uri uri, int rotation) throws Exception {
+        int generation = generations.incrementAndGet();
+        synchronized (lock) {
+            if (generation < writtenGeneration)
+                return SUPERSEDED;
+
+            Result result = copySource(resolver, uri, rotation);
+            writtenGeneration = generation;
+            return result;
+        }
+    }
+
+    private Result copySource(ContentResolver resolver, Uri uri, int rotation) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null)
+            throw new IOException("Unable to open " + uri);
+
+        try {
+            FileOutputStream fileStream = new FileOutputStream(file);
+            try {
+                byte[] chunk = new byte[CHUNK_SIZE];
+                int count;
+                while ((count = input.read(chunk)) != -1)
+                    fileStream.write(chunk, 0, count);
+
+                fileStream.getFD().sync();
+            } finally {
+                fileStream.close();
+            }
+        } finally {
+            input.close();
+        }
+
+        //Only the Exif block changes, the image data is copied byte for byte
+        ExifUtil.rotate(file, rotation);
+
+        return new Result(file, file.length(), SystemClock.elapsedRealtime() - start, Fingerprint.forUri(uri));
+    }
+
+    @Override
+    public void onSourceWritten(Uri uri, Object result) {
+        if (result == SUPERSEDED)
+            return;
+
+        if (result == null)
+            onImageLoadFailed();
+        else
+            onImageLoaded(uri, (Result) result);
+    }
+
+    @Override
+    public void process(Uri uri, Bitmap bitmap) {
+        process(uri, bitmap, null);
+    }
+
+    @Override
+    public void process(final Uri uri, final Bitmap bitmap, final PickMetrics metrics) {
+        final Bitmap.CompressFormat format = this.format;
+        final int quality = this.quality;
+        final String fingerprint = Fingerprint.forUri(uri);
+        final int generation = generations.incrementAndGet();
+
+        //A second image would be appended to the first one
+        if (file == null) {
+            if (written) {
+                if (metrics != null)
+                    metrics.report();
+
+                onImageLoadFailed();
+                return;
+            }
+
+            written = true;
+        }
+
+        new PickerTask<Result>() {
+            @Override
+            Result doInBackground() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    synchronized (lock) {
+                        if (generation < writtenGeneration)
+                            return SUPERSEDED;
+
+                        Result result = write(bitmap, format, quality, fingerprint);
+                        writtenGeneration = generation;
+                        return result;
+                    }
+                } finally {
+                    if (metrics != null)
+                        metrics.record(PickMetrics.Stage.ENCODE, start);
+                }
+            }
+
+            @Override
+            void onPostExecute(Result result) {
+                if (metrics != null)
+                    metrics.report();
+
+                if (result == SUPERSEDED)
+                    return;
+
+                if (result == null)
+                    onImageLoadFailed();
+                else
+                    onImageLoaded(uri, result);
+            }
+        }.execute(getSerialExecutor());
+    }
+
+    private Result write(Bitmap bitmap, Bitmap.CompressFormat format, int quality, String fingerprint) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        FileOutputStream fileStream = file != null ? new FileOutputStream(file) : null;
+        try {
+            ChunkedStream chunked;
+            if (channel != null)
+                chunked = new ChunkedStream(channel);
+            else
+                chunked = new ChunkedStream(fileStream != null ? fileStream : stream);
+
+            if (!bitmap.compress(format, quality, chunked))
+                throw new IOException("Unable to compress image");
+
+            chunked.flush();
+
+            //Make sure the file is complete before anyone reads it
+            if (fileStream != null)
+                fileStream.getFD().sync();
+
+            return new Result(file, chunked.getByteCount(), SystemClock.elapsedRealtime() - start, fingerprint);
+        } finally {
+            if (fileStream != null)
+                fileStream.close();
+        }
+    }
+
+    /**
+     * Outcome of a write
+     */
+    public static final class Result {
+        private final File file;
+        private final long byteCount;
+        private final long durationMillis;
+        private final String fingerprint;
+
+        Result(File file, long byteCount, long durationMillis, String fingerprint) {
+            this.file = file;
+            this.byteCount = byteCount;
+            this.durationMillis = durationMillis;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return File written or null if writing to a stream or channel
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return Number of bytes written
+         */
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        /**
+         * @return Time taken to compress and write in milliseconds
+         */
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return Content fingerprint of the source or null if it couldn't be read
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+
+    /**
+     * Collects compressed bytes into a fixed chunk and hands full chunks to the target
+     */
+    private static class ChunkedStream extends OutputStream {
+        private final OutputStream stream;
+        private final WritableByteChannel channel;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        private int count;
+        private long byteCount;
+
+        ChunkedStream(OutputStream stream) {
+            this.stream = stream;
+            this.channel = null;
+        }
+
+        ChunkedStream(WritableByteChannel channel) {
+            this.stream = null;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == CHUNK_SIZE)
+                drain();
+
+            chunk[count++] = (byte) b;
+            byteCount++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == CHUNK_SIZE)
+                    drain();
+
+                int copy = Math.min(length, CHUNK_SIZE - count);
+                System.arraycopy(bytes, offset, chunk, count, copy);
+                count += copy;
+                offset += copy;
+                length -= copy;
+                byteCount += copy;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+
+            if (stream != null)
+                stream.flush();
+        }
+
+        long getByteCount() {
+            return byteCount;
+        }
+
+        private void drain() throws IOException {
+            if (count == 0)
+                return;
+
+            if (channel != null) {
+                buffer.clear();
+                buffer.limit(count);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            } else {
+                stream.write(chunk, 0, count);
+            }
+
+            count = 0;
+        }
+    }
+}
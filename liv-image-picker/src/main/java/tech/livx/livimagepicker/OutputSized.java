@@ -0,0 +1,322 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Output image compressed to fit a maximum byte size. Searches for the highest quality that fits,
+ * encoding several candidate qualities in parallel per step, and scales the image down if even the
+ * lowest quality is too large.
+ */
+public abstract class OutputSized implements Output<OutputSized.Result>, EncodingOutput {
+    //Candidates encoded in parallel per search step
+    private static final int CANDIDATES = 3;
+    private static final int MIN_QUALITY = 10;
+    private static final int MAX_QUALITY = 95;
+    //Each downscale keeps about half the pixels
+    private static final float DOWNSCALE = 0.7f;
+    private static final int MAX_DOWNSCALES = 6;
+
+    private final int maxBytes;
+
+    private Executor executor;
+    //Runs the encodes of this output one after the other on the executor
+    private Executor serialExecutor;
+    private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+
+    /**
+     * @param maxBytes Maximum size of the encoded image in bytes
+     */
+    public OutputSized(int maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Max bytes must be positive");
+
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Encodes of one output run one at a time so images, e.g. successive rotations, are delivered in
+     * the order they were handed over and a stale one can't arrive last.
+     *
+     * @param executor Executor used for encoding, defaults to PickerExecutors.getDefault()
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+        this.serialExecutor = null;
+    }
+
+    private Executor getSerialExecutor() {
+        if (serialExecutor == null)
+            serialExecutor = PickerExecutors.serial(executor != null ? executor : PickerExecutors.getDefault());
+
+        return serialExecutor;
+    }
+
+    /**
+     * @param format Lossy compression format, JPEG (default) or WEBP
+     */
+    public void setCompressFormat(Bitmap.CompressFormat format) {
+        if (format != Bitmap.CompressFormat.JPEG && format != Bitmap.CompressFormat.WEBP)
+            throw new IllegalArgumentException("Only JPEG and WEBP can be compressed to a size");
+
+        this.format = format;
+    }
+
+    @Override
+    public void process(Uri uri, Bitmap bitmap) {
+        process(uri, bitmap, null);
+    }
+
+    @Override
+    public void process(final Uri uri, final Bitmap bitmap, final PickMetrics metrics) {
+        final Bitmap.CompressFormat format = this.format;
+        final String fingerprint = Fingerprint.forUri(uri);
+
+        new PickerTask<Result>() {
+            @Override
+            Result doInBackground() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    return encode(bitmap, format, maxBytes, fingerprint);
+                } finally {
+                    if (metrics != null)
+                        metrics.record(PickMetrics.Stage.ENCODE, start);
+                }
+            }
+
+            @Override
+            void onPostExecute(Result result) {
+                if (metrics != null)
+                    metrics.report();
+
+                if (result == null)
+                    onImageLoadFailed();
+                else
+                    onImageLoaded(uri, result);
+            }
+        }.execute(getSerialExecutor());
+    }
+
+    static Result encode(Bitmap bitmap, Bitmap.CompressFormat format, int maxBytes, String fingerprint) throws Exception {
+        Bitmap scaled = bitmap;
+        int passes = 0;
+
+        try {
+            for (int downscales = 0; downscales <= MAX_DOWNSCALES; downscales++) {
+                Search search = new Search(scaled, format, maxBytes);
+                search.run();
+                passes += search.passes;
+
+                if (search.best != null) {
+                    return new Result(search.best.toByteArray(), search.bestQuality, scaled.getWidth(),
+                            scaled.getHeight(), passes, fingerprint);
+                }
+
+                int width = Math.round(scaled.getWidth() * DOWNSCALE);
+                int height = Math.round(scaled.getHeight() * DOWNSCALE);
+                if (width < 1 || height < 1)
+                    break;
+
+                Bitmap next = Bitmap.createScaledBitmap(scaled, width, height, true);
+                if (scaled != bitmap)
+                    scaled.recycle();
+
+                scaled = next;
+            }
+        } finally {
+            if (scaled != bitmap)
+                scaled.recycle();
+        }
+
+        throw new IOException("Unable to compress image to " + maxBytes + " bytes");
+    }
+
+    /**
+     * Search for the highest quality that fits. Each step encodes evenly spaced candidates across the open
+     * range in parallel and narrows the range to between the best fit and the lowest miss above it.
+     */
+    static class Search {
+        private final Bitmap bitmap;
+        private final Bitmap.CompressFormat format;
+        private final int maxBytes;
+
+        CappedStream best;
+        int bestQuality = -1;
+        int passes;
+
+        Search(Bitmap bitmap, Bitmap.CompressFormat format, int maxBytes) {
+            this.bitmap = bitmap;
+            this.format = format;
+            this.maxBytes = maxBytes;
+        }
+
+        void run() throws Exception {
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY;
+
+            while (low <= high) {
+                List<Integer> qualities = new ArrayList<>(CANDIDATES);
+                int span = high - low;
+                for (int i = 0; i < CANDIDATES; i++) {
+                    int quality = span < CANDIDATES ? low + i : low + Math.round((i + 1) * span / (float) CANDIDATES);
+                    if (quality <= high && !qualities.contains(quality))
+                        qualities.add(quality);
+                }
+
+                List<Future<CappedStream>> futures = new ArrayList<>(qualities.size());
+                for (final int quality : qualities) {
+                    futures.add(PickerExecutors.getEncoder().submit(new Callable<CappedStream>() {
+                        @Override
+                        public CappedStream call() {
+                            CappedStream stream = new CappedStream(maxBytes);
+                            return compress(quality, stream) && !stream.overflowed ? stream : null;
+                        }
+                    }));
+                }
+
+                //Candidates are in ascending quality
+                int fit = -1;
+                int miss = high + 1;
+                for (int i = 0; i < qualities.size(); i++) {
+                    CappedStream stream = futures.get(i).get();
+                    int quality = qualities.get(i);
+                    passes++;
+
+                    if (stream != null) {
+                        fit = quality;
+                        miss = high + 1;
+                        if (quality > bestQuality) {
+                            best = stream;
+                            bestQuality = quality;
+                        }
+                    } else if (miss > high) {
+                        miss = quality;
+                    }
+                }
+
+                if (fit >= 0)
+                    low = fit + 1;
+                high = miss - 1;
+            }
+        }
+
+        /**
+         * Encode one candidate, called concurrently from the encoder threads
+         */
+        boolean compress(int quality, OutputStream stream) {
+            return bitmap.compress(format, quality, stream);
+        }
+    }
+
+    /**
+     * Buffer that stops growing once the budget is exceeded, so oversized candidates never hold more than
+     * the budget
+     */
+    private static class CappedStream extends ByteArrayOutputStream {
+        private final int maxBytes;
+        boolean overflowed;
+
+        CappedStream(int maxBytes) {
+            super(Math.min(maxBytes, 256 * 1024));
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (check(1))
+                super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            if (check(length))
+                super.write(bytes, offset, length);
+        }
+
+        private boolean check(int length) {
+            if (count + length > maxBytes)
+                overflowed = true;
+
+            return !overflowed;
+        }
+    }
+
+    /**
+     * Encoded image and how it was reached
+     */
+    public static final class Result {
+        private final byte[] bytes;
+        private final int quality;
+        private final int width;
+        private final int height;
+        private final int passes;
+        private final String fingerprint;
+
+        Result(byte[] bytes, int quality, int width, int height, int passes, String fingerprint) {
+            this.bytes = bytes;
+            this.quality = quality;
+            this.width = width;
+            this.height = height;
+            this.passes = passes;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return Encoded image
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return Size of the encoded image in bytes
+         */
+        public int getSize() {
+            return bytes.length;
+        }
+
+        /**
+         * @return Quality the image was encoded at
+         */
+        public int getQuality() {
+            return quality;
+        }
+
+        /**
+         * @return Width of the encoded image, smaller than the output when downscaled
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return Height of the encoded image, smaller than the output when downscaled
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return Number of candidate encodes the search needed
+         */
+        public int getPasses() {
+            return passes;
+        }
+
+        /**
+         * @return Content fingerprint of the source or null if it couldn't be read
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
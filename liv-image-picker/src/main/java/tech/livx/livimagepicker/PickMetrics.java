@@ -0,0 +1,193 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+
+/**
+ * Timings and sizes recorded for one picked image. Only collected while a MetricsListener is set.
+ * Stage timings come from System.nanoTime so they are monotonic.
+ */
+public final class PickMetrics {
+
+    /**
+     * Pipeline stages, a stage that didn't run reports 0
+     */
+    public enum Stage {
+        //Cache key lookup and memory/disk cache reads
+        CACHE,
+        //Opening the source with the content resolver
+        OPEN,
+        //Bounds pass
+        BOUNDS,
+        //Exif orientation lookup
+        EXIF,
+        //Pixel decode
+        DECODE,
+        //Scale, crop and rotate
+        TRANSFORM,
+        //Compression and encoding by the output
+        ENCODE
+    }
+
+    /**
+     * Where the delivered image came from
+     */
+    public enum CacheResult {
+        MISS,
+        MEMORY,
+        DISK
+    }
+
+    private final Uri uri;
+    private final long[] stageNanos = new long[Stage.values().length];
+    private MetricsListener listener;
+
+    private CacheResult cacheResult = CacheResult.MISS;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int sampleSize = 1;
+    private long bytesRead;
+    private long allocatedBytes;
+    private String fingerprint;
+
+    PickMetrics(Uri uri, MetricsListener listener) {
+        this.uri = uri;
+        this.listener = listener;
+    }
+
+    /**
+     * Add the time since start to a stage
+     *
+     * @param stage Stage to add to
+     * @param start System.nanoTime at the start of the stage
+     * @return Current System.nanoTime, the start of the next stage
+     */
+    long record(Stage stage, long start) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - start;
+        return now;
+    }
+
+    void setCacheResult(CacheResult cacheResult) {
+        this.cacheResult = cacheResult;
+    }
+
+    void setSource(int width, int height) {
+        this.sourceWidth = width;
+        this.sourceHeight = height;
+    }
+
+    void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    void addAllocation(Bitmap bitmap) {
+        if (bitmap != null)
+            allocatedBytes += Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    /**
+     * Hand the record to the listener, only the first call reports. Must be called on the main thread.
+     */
+    void report() {
+        if (listener == null)
+            return;
+
+        MetricsListener target = listener;
+        listener = null;
+        target.onPickMetrics(this);
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @param stage Pipeline stage
+     * @return Time spent in the stage in nanoseconds
+     */
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    /**
+     * @return Time spent in all stages in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : stageNanos)
+            total += nanos;
+
+        return total;
+    }
+
+    public CacheResult getCacheResult() {
+        return cacheResult;
+    }
+
+    /**
+     * @return Width of the source image, 0 on a cache hit
+     */
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    /**
+     * @return Height of the source image, 0 on a cache hit
+     */
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * @return inSampleSize used for the pixel decode
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @return Bytes read from the source
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Bytes of the decoded and transformed bitmaps
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return Content fingerprint of the source or null if it couldn't be read
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PickMetrics{").append(uri)
+                .append(", cache=").append(cacheResult)
+                .append(", source=").append(sourceWidth).append('x').append(sourceHeight)
+                .append(", sample=").append(sampleSize)
+                .append(", read=").append(bytesRead)
+                .append(", allocated=").append(allocatedBytes);
+
+        for (Stage stage : Stage.values())
+            builder.append(", ").append(stage.name().toLowerCase()).append('=').append(getStageNanos(stage) / 1000).append("us");
+
+        return builder.append('}').toString();
+    }
+}
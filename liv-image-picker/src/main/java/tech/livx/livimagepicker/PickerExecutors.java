@@ -0,0 +1,142 @@
+package tech.livx.livimagepicker;
+
+import android.os.Process;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used for decoding and encoding when none is supplied
+ */
+public final class PickerExecutors {
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static ThreadPoolExecutor defaultExecutor;
+    private static ThreadPoolExecutor encodeExecutor;
+
+    private PickerExecutors() {
+    }
+
+    /**
+     * Shared bounded pool, one thread per core less the main thread's, at least two and at most four.
+     * Threads are released when idle.
+     *
+     * @return Default executor
+     */
+    public static synchronized Executor getDefault() {
+        if (defaultExecutor == null) {
+            int threads = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+
+            defaultExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), newThreadFactory("LivImagePicker"));
+            defaultExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return defaultExecutor;
+    }
+
+    /**
+     * Small pool for work fanned out from a task already running on the default executor, kept separate so
+     * the fan out can't wait on its own queue.
+     *
+     * @return Executor for parallel encodes
+     */
+    static synchronized ExecutorService getEncoder() {
+        if (encodeExecutor == null) {
+            int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 3));
+
+            encodeExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), newThreadFactory("LivImagePicker-Encode"));
+            encodeExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return encodeExecutor;
+    }
+
+    /**
+     * @return Number of threads of the encoder pool
+     */
+    static int getEncoderThreads() {
+        return ((ThreadPoolExecutor) getEncoder()).getMaximumPoolSize();
+    }
+
+    /**
+     * Executor running its tasks one at a time in submission order on another executor, for work that
+     * must not overlap, e.g. writes to the same file. Holds no thread of its own.
+     *
+     * @param executor Executor the tasks run on
+     * @return Serial executor
+     */
+    static Executor serial(Executor executor) {
+        return new SerialExecutor(executor);
+    }
+
+    /**
+     * Start the core threads of both pools ahead of the first task. Idle threads still time out.
+     */
+    static void prestart() {
+        ((ThreadPoolExecutor) getDefault()).prestartAllCoreThreads();
+        ((ThreadPoolExecutor) getEncoder()).prestartAllCoreThreads();
+    }
+
+    /**
+     * @param name Thread name prefix
+     * @return Factory creating background priority threads
+     */
+    static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, name + "-" + count.incrementAndGet());
+            }
+        };
+    }
+
+    private static class SerialExecutor implements Executor {
+        private final Executor executor;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private Runnable active;
+
+        SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(final Runnable runnable) {
+            tasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+
+            if (active == null)
+                scheduleNext();
+        }
+
+        private synchronized void scheduleNext() {
+            active = tasks.poll();
+            if (active != null)
+                executor.execute(active);
+        }
+    }
+}
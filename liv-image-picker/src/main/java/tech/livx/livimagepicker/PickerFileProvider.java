@@ -0,0 +1,10 @@
+package tech.livx.livimagepicker;
+
+import androidx.core.content.FileProvider;
+
+/**
+ * FileProvider serving private camera captures to the camera app. A subclass so it doesn't clash with
+ * a FileProvider declared by the app.
+ */
+public class PickerFileProvider extends FileProvider {
+}
@@ -0,0 +1,178 @@
+package tech.livx.livimagepicker;
+
+/**
+ * Size, sampling and orientation math of the decode pipeline. Plain Java with no Android types so it can be
+ * measured and checked on a desktop JVM.
+ */
+final class PickerMath {
+    //Exif orientation tag values with a pure rotation
+    static final int ORIENTATION_NORMAL = 1;
+    static final int ORIENTATION_ROTATE_180 = 3;
+    static final int ORIENTATION_ROTATE_90 = 6;
+    static final int ORIENTATION_ROTATE_270 = 8;
+
+    //Crop regions covering more of the frame than this aren't worth a region decode
+    private static final float MAX_CROP_COVERAGE = 0.9f;
+
+    private PickerMath() {
+    }
+
+    /**
+     * @param rotation Rotation in degrees, may be negative or above 360
+     * @return Rotation between 0 and 359
+     */
+    static int normalizeRotation(int rotation) {
+        return ((rotation % 360) + 360) % 360;
+    }
+
+    /**
+     * @param rotation Rotation in degrees
+     * @return true if the rotation swaps width and height
+     */
+    static boolean isTurned(int rotation) {
+        return (normalizeRotation(rotation) / 90) % 2 != 0;
+    }
+
+    /**
+     * @param orientation Exif orientation tag value
+     * @return Rotation in degrees, 0 for undefined or mirrored orientations
+     */
+    static int getOrientationDegrees(int orientation) {
+        switch (orientation) {
+            case ORIENTATION_ROTATE_270:
+                return 270;
+            case ORIENTATION_ROTATE_180:
+                return 180;
+            case ORIENTATION_ROTATE_90:
+                return 90;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param orientation Exif orientation tag value
+     * @return true if the orientation is a rotation only, without mirroring
+     */
+    static boolean isPlainRotation(int orientation) {
+        return orientation == 0 || orientation == ORIENTATION_NORMAL || orientation == ORIENTATION_ROTATE_90
+                || orientation == ORIENTATION_ROTATE_180 || orientation == ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * @param degrees Rotation in degrees, a multiple of 90
+     * @return Exif orientation tag value
+     */
+    static int getOrientation(int degrees) {
+        switch (normalizeRotation(degrees)) {
+            case 270:
+                return ORIENTATION_ROTATE_270;
+            case 180:
+                return ORIENTATION_ROTATE_180;
+            case 90:
+                return ORIENTATION_ROTATE_90;
+            default:
+                return ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Scale that makes a frame cover a box, the overflow is cropped
+     */
+    static float getCoverScale(float width, float height, float boxWidth, float boxHeight) {
+        return Math.max(boxWidth / width, boxHeight / height);
+    }
+
+    /**
+     * Scale that makes a frame fit inside a box
+     */
+    static float getFitScale(float width, float height, float boxWidth, float boxHeight) {
+        return Math.min(boxWidth / width, boxHeight / height);
+    }
+
+    /**
+     * Size of a frame once scaled to a box: covering the box when exact, fitting inside it otherwise.
+     * Frames are never scaled up.
+     *
+     * @param width     Width of the frame
+     * @param height    Height of the frame
+     * @param boxWidth  Target width in the frame's orientation
+     * @param boxHeight Target height in the frame's orientation
+     * @param exact     Cover instead of fit
+     * @return Width and height
+     */
+    static int[] getTargetSize(int width, int height, float boxWidth, float boxHeight, boolean exact) {
+        float scale = exact ? getCoverScale(width, height, boxWidth, boxHeight) : getFitScale(width, height, boxWidth, boxHeight);
+        scale = Math.min(1, scale);
+
+        return new int[]{Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale))};
+    }
+
+    /**
+     * Size of a frame once fitted to a box, keeping its short side at least minSide so the result can still
+     * be cropped to any aspect ratio of that size. Frames are never scaled up.
+     *
+     * @param width     Width of the frame
+     * @param height    Height of the frame
+     * @param boxWidth  Target width in the frame's orientation
+     * @param boxHeight Target height in the frame's orientation
+     * @param minSide   Shortest side to keep, 0 for a plain fit
+     * @return Width and height
+     */
+    static int[] getTargetSize(int width, int height, float boxWidth, float boxHeight, float minSide) {
+        int[] target = getTargetSize(width, height, boxWidth, boxHeight, false);
+        if (minSide <= 0)
+            return target;
+
+        //A square cover keeps the short side whatever the rotation
+        int[] covered = getTargetSize(width, height, minSide, minSide, true);
+        return covered[0] > target[0] ? covered : target;
+    }
+
+    /**
+     * Largest power of two sample size that keeps a frame at least the given size
+     *
+     * @param width        Width of the frame
+     * @param height       Height of the frame
+     * @param targetWidth  Minimum width after sampling
+     * @param targetHeight Minimum height after sampling
+     * @return Sample size
+     */
+    static int getSampleSize(int width, int height, float targetWidth, float targetHeight) {
+        //Start off with a 1:1 ratio (Full size)
+        int scaleFactor = 1;
+
+        while (width / (scaleFactor * 2) >= targetWidth && height / (scaleFactor * 2) >= targetHeight)
+            scaleFactor *= 2;
+
+        return scaleFactor;
+    }
+
+    /**
+     * Centered region of a frame with the aspect ratio of the target
+     *
+     * @return Left, top, right and bottom or null if it covers nearly the whole frame and a full decode is
+     * just as cheap
+     */
+    static int[] getCropRegion(int width, int height, float targetWidth, float targetHeight) {
+        if (width <= 0 || height <= 0 || targetWidth <= 0 || targetHeight <= 0)
+            return null;
+
+        float targetAspect = targetWidth / targetHeight;
+        int cropWidth = width;
+        int cropHeight = height;
+
+        if ((float) width / height > targetAspect)
+            cropWidth = Math.max(1, Math.round(height * targetAspect));
+        else
+            cropHeight = Math.max(1, Math.round(width / targetAspect));
+
+        if ((long) cropWidth * cropHeight > (long) width * height * MAX_CROP_COVERAGE)
+            return null;
+
+        int left = (width - cropWidth) / 2;
+        int top = (height - cropHeight) / 2;
+
+        return new int[]{left, top, left + cropWidth, top + cropHeight};
+    }
+}
@@ -0,0 +1,111 @@
+package tech.livx.livimagepicker;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Background task run on a supplied Executor with its result posted back to the main thread.
+ * Replaces AsyncTask so work isn't serialised through one process wide queue.
+ *
+ * @param <R> Result type
+ */
+abstract class PickerTask<R> implements Runnable {
+    private static Handler mainHandler;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Runs on the executor
+     *
+     * @return Result passed to onPostExecute
+     * @throws Exception on failure, reported to onPostExecute as a null result as is OutOfMemoryError
+     */
+    abstract R doInBackground() throws Exception;
+
+    /**
+     * Runs on the main thread when the task completed without being cancelled
+     *
+     * @param result Result of doInBackground, null on failure
+     */
+    void onPostExecute(R result) {
+    }
+
+    /**
+     * Runs on the main thread once a cancelled task has stopped running
+     *
+     * @param result Result of doInBackground if it ran, otherwise null
+     */
+    void onCancelled(R result) {
+    }
+
+    /**
+     * Post intermediate work to the main thread from doInBackground. Dropped if the task is cancelled by then.
+     *
+     * @param runnable Work to run on the main thread
+     */
+    void publish(final Runnable runnable) {
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancelled)
+                    runnable.run();
+            }
+        });
+    }
+
+    /**
+     * Queue the task
+     *
+     * @param executor Executor to run on
+     * @return This task, used as the handle to cancel it
+     */
+    PickerTask<R> execute(Executor executor) {
+        executor.execute(this);
+        return this;
+    }
+
+    /**
+     * Cancel the task. Running work stops at its next check of isCancelled and onPostExecute is not called.
+     * Must be called from the main thread.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public final void run() {
+        R result = null;
+
+        if (!cancelled) {
+            try {
+                result = doInBackground();
+            } catch (Exception | OutOfMemoryError e) {
+                e.printStackTrace();
+            }
+        }
+
+        final R finalResult = result;
+        getMainHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled)
+                    onCancelled(finalResult);
+                else
+                    onPostExecute(finalResult);
+            }
+        });
+    }
+
+    private static synchronized Handler getMainHandler() {
+        if (mainHandler == null)
+            mainHandler = new Handler(Looper.getMainLooper());
+
+        return mainHandler;
+    }
+}
@@ -0,0 +1,116 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+
+/**
+ * Declared size and encoding of one image produced by OutputRenditions
+ */
+public final class Rendition {
+    private final String name;
+    private final int width;
+    private final int height;
+    private final boolean exact;
+    private Bitmap.CompressFormat format;
+    private int quality = 90;
+
+    /**
+     * @param name   Name used to tell renditions apart
+     * @param width  Maximum width of the image
+     * @param height Maximum height of the image
+     * @param exact  Flag to specify if the image must be exactly the width and height
+     */
+    public Rendition(String name, int width, int height, boolean exact) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Width and height must be positive");
+
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.exact = exact;
+    }
+
+    /**
+     * Encode this rendition instead of delivering a bitmap
+     *
+     * @param format  Compression format (JPEG, PNG or WEBP), null to deliver a bitmap
+     * @param quality Quality 0-100, ignored by lossless formats
+     * @return This rendition
+     */
+    public Rendition setCompressFormat(Bitmap.CompressFormat format, int quality) {
+        if (quality < 0 || quality > 100)
+            throw new IllegalArgumentException("Quality must be between 0 and 100");
+
+        this.format = format;
+        this.quality = quality;
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return Compression format or null if delivered as a bitmap
+     */
+    public Bitmap.CompressFormat getCompressFormat() {
+        return format;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Produced rendition, either a bitmap or encoded bytes
+     */
+    public static final class Image {
+        private final Rendition rendition;
+        private final Bitmap bitmap;
+        private final byte[] bytes;
+        private final String fingerprint;
+
+        Image(Rendition rendition, Bitmap bitmap, byte[] bytes, String fingerprint) {
+            this.rendition = rendition;
+            this.bitmap = bitmap;
+            this.bytes = bytes;
+            this.fingerprint = fingerprint;
+        }
+
+        public Rendition getRendition() {
+            return rendition;
+        }
+
+        /**
+         * @return Image or null if the rendition is encoded
+         */
+        public Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        /**
+         * @return Encoded image or null if the rendition is a bitmap
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return Content fingerprint of the source or null if it couldn't be read
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+    }
+}
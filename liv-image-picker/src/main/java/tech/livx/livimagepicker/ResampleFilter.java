@@ -0,0 +1,43 @@
+package tech.livx.livimagepicker;
+
+/**
+ * Filters for the resampling step after the sampled decode
+ */
+public enum ResampleFilter {
+    //Area average, fast and alias free for downscales
+    BOX(0.5f),
+    //Linear interpolation, widened to an area filter for downscales
+    BILINEAR(1f),
+    //Windowed sinc with three lobes, the sharpest but also the slowest
+    LANCZOS(3f);
+
+    //Radius of the kernel in source pixels at a scale of 1
+    final float support;
+
+    ResampleFilter(float support) {
+        this.support = support;
+    }
+
+    /**
+     * @param x Distance from the sample center in source pixels, scaled for downscales
+     * @return Kernel weight
+     */
+    float weight(float x) {
+        x = Math.abs(x);
+
+        switch (this) {
+            case BOX:
+                return x <= 0.5f ? 1f : 0f;
+            case BILINEAR:
+                return x < 1f ? 1f - x : 0f;
+            default:
+                if (x < 1e-6f)
+                    return 1f;
+                if (x >= support)
+                    return 0f;
+
+                double pix = Math.PI * x;
+                return (float) (support * Math.sin(pix) * Math.sin(pix / support) / (pix * pix));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package tech.livx.livimagepicker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pixel math of the resampler on int[] ARGB pixels. The filter is separable: a horizontal pass over the
+ * source rows the output needs, then a vertical pass that writes straight to the rotated position. Both
+ * passes are split into row stripes that run in parallel, with the calling thread working on stripes as
+ * well. Colors are filtered premultiplied by their alpha so transparent neighbours don't darken edges.
+ * Plain Java with no Android types so it can be measured and checked on a desktop JVM.
+ */
+final class ResampleKernel {
+    //Stripes per thread so uneven stripes balance out
+    private static final int STRIPES_PER_THREAD = 2;
+    //Don't split below this many rows per stripe
+    private static final int MIN_STRIPE_ROWS = 16;
+    //Band channels are 16 bit fixed point, premultiplied colors keep their precision at low alpha
+    private static final float BAND_SCALE = 257f;
+    //Bytes per band pixel, see getBufferBytes
+    static final int BAND_BYTES = 8;
+
+    private ResampleKernel() {
+    }
+
+    /**
+     * Resample and rotate ARGB pixels
+     *
+     * @param pixels   Source rows rows.min to rows.max
+     * @param width    Width of the source rows
+     * @param columns  Horizontal weights
+     * @param rows     Vertical weights
+     * @param rotation Rotation in degrees, 0, 90, 180 or 270
+     * @param helpers  Executor for the stripes the calling thread doesn't get to
+     * @param threads  Threads to spread the stripes over, the calling thread included
+     * @return Output pixels, rotated
+     * @throws InterruptedException if interrupted while waiting for stripes
+     */
+    static int[] resample(final int[] pixels, final int width, final Weights columns, final Weights rows,
+                          final int rotation, Executor helpers, int threads) throws InterruptedException {
+        final int outWidth = columns.length;
+        final int outHeight = rows.length;
+        final int bandHeight = rows.max - rows.min;
+
+        //Horizontal pass, one row of the band per source row
+        final long[] band = new long[outWidth * bandHeight];
+        runStripes(bandHeight, helpers, threads, new Stripe() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int rowStart = y * width;
+                    for (int x = 0; x < outWidth; x++) {
+                        int start = columns.start[x];
+                        int count = columns.count[x];
+                        int weightIndex = x * columns.stride;
+
+                        float a = 0, r = 0, g = 0, b = 0;
+                        for (int i = 0; i < count; i++) {
+                            int pixel = pixels[rowStart + start + i];
+                            float alpha = pixel >>> 24;
+                            float weight = columns.weights[weightIndex + i];
+                            float premultiplied = alpha / 255f * weight;
+                            a += alpha * weight;
+                            r += ((pixel >> 16) & 0xff) * premultiplied;
+                            g += ((pixel >> 8) & 0xff) * premultiplied;
+                            b += (pixel & 0xff) * premultiplied;
+                        }
+
+                        band[y * outWidth + x] = packBand(a, r, g, b);
+                    }
+                }
+            }
+        });
+
+        //Vertical pass, written straight to the rotated position
+        final int[] output = new int[outWidth * outHeight];
+        runStripes(outHeight, helpers, threads, new Stripe() {
+            @Override
+            public void run(int from, int to) {
+                for (int y = from; y < to; y++) {
+                    int start = rows.start[y] - rows.min;
+                    int count = rows.count[y];
+                    int weightIndex = y * rows.stride;
+
+                    for (int x = 0; x < outWidth; x++) {
+                        float a = 0, r = 0, g = 0, b = 0;
+                        for (int i = 0; i < count; i++) {
+                            long pixel = band[(start + i) * outWidth + x];
+                            float weight = rows.weights[weightIndex + i];
+                            a += (pixel >>> 48) * weight;
+                            r += ((pixel >>> 32) & 0xffff) * weight;
+                            g += ((pixel >>> 16) & 0xffff) * weight;
+                            b += (pixel & 0xffff) * weight;
+                        }
+
+                        output[getIndex(x, y, outWidth, outHeight, rotation)] = unpremultiply(a / BAND_SCALE,
+                                r / BAND_SCALE, g / BAND_SCALE, b / BAND_SCALE);
+                    }
+                }
+            }
+        });
+
+        return output;
+    }
+
+    /**
+     * Index in the rotated output of a pixel of the unrotated output, rotations are clockwise
+     */
+    static int getIndex(int x, int y, int width, int height, int rotation) {
+        switch (rotation) {
+            case 90:
+                return x * height + (height - 1 - y);
+            case 180:
+                return (height - 1 - y) * width + (width - 1 - x);
+            case 270:
+                return (width - 1 - x) * height + y;
+            default:
+                return y * width + x;
+        }
+    }
+
+    /**
+     * @return Bytes of the int[] and long[] buffers a resample of the given sizes allocates on top of the bitmaps
+     */
+    static long getBufferBytes(long sourcePixels, long bandPixels, long outputPixels) {
+        return sourcePixels * 4 + bandPixels * BAND_BYTES + outputPixels * 4;
+    }
+
+    private static long packBand(float a, float r, float g, float b) {
+        return (long) clampBand(a) << 48 | (long) clampBand(r) << 32 | (long) clampBand(g) << 16 | clampBand(b);
+    }
+
+    private static int clampBand(float value) {
+        int rounded = Math.round(value * BAND_SCALE);
+        return rounded < 0 ? 0 : (rounded > 0xffff ? 0xffff : rounded);
+    }
+
+    private static int unpremultiply(float a, float r, float g, float b) {
+        int alpha = clamp(a);
+        if (alpha == 0)
+            return 0;
+
+        float scale = 255f / Math.min(255f, a);
+        return alpha << 24 | clamp(r * scale) << 16 | clamp(g * scale) << 8 | clamp(b * scale);
+    }
+
+    private static int clamp(float value) {
+        int rounded = Math.round(value);
+        return rounded < 0 ? 0 : (rounded > 255 ? 255 : rounded);
+    }
+
+    /**
+     * Split rows into stripes and run them on the helpers and the calling thread
+     */
+    private static void runStripes(final int rows, Executor helpers, int threads, final Stripe stripe)
+            throws InterruptedException {
+        final int stripes = Math.max(1, Math.min(threads * STRIPES_PER_THREAD, rows / MIN_STRIPE_ROWS));
+        final int stripeRows = (rows + stripes - 1) / stripes;
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(stripes);
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                while ((index = next.getAndIncrement()) < stripes) {
+                    try {
+                        stripe.run(index * stripeRows, Math.min(rows, (index + 1) * stripeRows));
+                    } catch (RuntimeException e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+
+        //Helpers only pick up stripes the caller hasn't reached yet, so a busy pool can't stall the caller
+        for (int i = 1; i < Math.min(stripes, threads); i++)
+            helpers.execute(worker);
+
+        worker.run();
+        done.await();
+
+        if (error.get() != null)
+            throw error.get();
+    }
+
+    private interface Stripe {
+        void run(int from, int to);
+    }
+
+    /**
+     * Filter weights of each output position along one axis
+     */
+    static final class Weights {
+        final int length;
+        final int stride;
+        final int[] start;
+        final int[] count;
+        final float[] weights;
+
+        //Range of source positions used
+        int min = Integer.MAX_VALUE;
+        int max;
+
+        /**
+         * @param filter       Resampling filter
+         * @param sourceLength Source pixels along the axis
+         * @param length       Output pixels along the axis
+         * @param scale        Output size over source size
+         * @param offset       Source position of the first output pixel's edge
+         */
+        Weights(ResampleFilter filter, int sourceLength, int length, float scale, float offset) {
+            //Downscales widen the kernel so every source pixel contributes
+            float filterScale = Math.min(1f, scale);
+            float support = filter.support / filterScale;
+
+            this.length = length;
+            this.stride = (int) Math.ceil(support * 2) + 3;
+            this.start = new int[length];
+            this.count = new int[length];
+            this.weights = new float[length * stride];
+
+            for (int i = 0; i < length; i++) {
+                float center = (i + 0.5f) / scale + offset;
+                int first = Math.max(0, (int) Math.floor(center - support));
+                int last = Math.min(sourceLength - 1, (int) Math.ceil(center + support));
+
+                float total = 0;
+                for (int j = first; j <= last; j++) {
+                    float weight = filter.weight((j + 0.5f - center) * filterScale);
+                    weights[i * stride + j - first] = weight;
+                    total += weight;
+                }
+
+                if (total == 0) {
+                    //Nothing under the kernel, take the nearest pixel
+                    first = Math.max(0, Math.min(sourceLength - 1, (int) center));
+                    last = first;
+                    weights[i * stride] = 1;
+                    total = 1;
+                }
+
+                //Pixels on the edge of the kernel may not contribute, they aren't read at all
+                int lead = 0;
+                while (weights[i * stride + lead] == 0)
+                    lead++;
+                while (weights[i * stride + last - first] == 0)
+                    last--;
+
+                first += lead;
+                for (int j = 0; j <= last - first; j++)
+                    weights[i * stride + j] = weights[i * stride + j + lead] / total;
+
+                start[i] = first;
+                count[i] = last - first + 1;
+                min = Math.min(min, first);
+                max = Math.max(max, last + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+
+/**
+ * Filtered scale, center crop and quarter turn rotation of a Bitmap, replacing the Canvas draw when a
+ * ResampleFilter is set. The pixels are resampled by ResampleKernel, striped across the fan out pool
+ * and the calling thread.
+ */
+final class Resampler {
+    private Resampler() {
+    }
+
+    /**
+     * Same contract as BitmapTransform.transform
+     *
+     * @param source    Sampled source bitmap. Left untouched.
+     * @param maxWidth  Maximum width of the image
+     * @param maxHeight Maximum height of the image
+     * @param exact     Flag to specify if the image must be exactly maxWidth and maxHeight
+     * @param rotation  Rotation in degrees, a multiple of 90
+     * @param filter    Resampling filter
+     * @return Transformed bitmap, the source itself if nothing has to change, or null if the target size is empty
+     * @throws InterruptedException if interrupted while waiting for stripes
+     */
+    static Bitmap transform(Bitmap source, float maxWidth, float maxHeight, boolean exact, int rotation,
+                            ResampleFilter filter) throws InterruptedException {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        rotation = PickerMath.normalizeRotation(rotation);
+
+        //Output window in the source's orientation
+        int width = exact ? Math.round(maxWidth) : sourceWidth;
+        int height = exact ? Math.round(maxHeight) : sourceHeight;
+        if (width <= 0 || height <= 0)
+            return null;
+
+        if (rotation == 0 && width == sourceWidth && height == sourceHeight)
+            return source;
+
+        float scale = exact ? PickerMath.getCoverScale(sourceWidth, sourceHeight, width, height) : 1f;
+
+        //The overflow is cropped evenly from both sides
+        float left = (sourceWidth - width / scale) / 2;
+        float top = (sourceHeight - height / scale) / 2;
+
+        ResampleKernel.Weights columns = new ResampleKernel.Weights(filter, sourceWidth, width, scale, left);
+        ResampleKernel.Weights rows = new ResampleKernel.Weights(filter, sourceHeight, height, scale, top);
+
+        //Only the source rows that contribute to the output are read
+        int[] pixels = new int[sourceWidth * (rows.max - rows.min)];
+        source.getPixels(pixels, 0, sourceWidth, 0, rows.min, sourceWidth, rows.max - rows.min);
+
+        //Stripes for each encoder thread and the calling thread
+        int[] output = ResampleKernel.resample(pixels, sourceWidth, columns, rows, rotation,
+                PickerExecutors.getEncoder(), PickerExecutors.getEncoderThreads() + 1);
+
+        boolean turned = PickerMath.isTurned(rotation);
+        int destWidth = turned ? height : width;
+        int destHeight = turned ? width : height;
+
+        Bitmap.Config config = source.getConfig() == Bitmap.Config.RGB_565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Bitmap dest = BitmapPool.getInstance().get(destWidth, destHeight, config);
+        dest.setPixels(output, 0, destWidth, 0, 0, destWidth, destHeight);
+        return dest;
+    }
+}
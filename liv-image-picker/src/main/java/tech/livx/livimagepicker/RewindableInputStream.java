@@ -0,0 +1,242 @@
+package tech.livx.livimagepicker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * InputStream wrapper that records what it reads so a source can be read several times
+ * (bounds, Exif, pixels) while only being opened once. Recorded bytes are held in memory up to
+ * a fixed limit and spooled to a temporary file when the header turns out to be bigger.
+ */
+class RewindableInputStream extends InputStream {
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    //Recording buffer kept between streams so each header pass doesn't grow a fresh one
+    private static byte[] spareBuffer;
+
+    private final InputStream source;
+    private final int memoryLimit;
+    private final File spoolDirectory;
+
+    //In memory record
+    private byte[] buffer = obtainBuffer();
+
+    //Temp file record, only used once memoryLimit is exceeded
+    private File spoolFile;
+    private RandomAccessFile spool;
+
+    private long recorded;
+    private long sourceBytesRead;
+    private long position;
+    private long mark;
+    private boolean recording = true;
+
+    /**
+     * Constructor
+     *
+     * @param source         Stream to wrap, closed along with this stream
+     * @param memoryLimit    Maximum number of bytes to record in memory
+     * @param spoolDirectory Directory for the temp file used once memoryLimit is exceeded
+     */
+    RewindableInputStream(InputStream source, int memoryLimit, File spoolDirectory) {
+        this.source = source;
+        this.memoryLimit = memoryLimit;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Allocate the shared recording buffer ahead of the first stream
+     *
+     * @param size Buffer size in bytes
+     */
+    static synchronized void preallocate(int size) {
+        if (spareBuffer == null || spareBuffer.length < size)
+            spareBuffer = new byte[size];
+    }
+
+    private static synchronized byte[] obtainBuffer() {
+        byte[] spare = spareBuffer;
+        spareBuffer = null;
+        return spare != null ? spare : new byte[0];
+    }
+
+    private static synchronized void releaseBuffer(byte[] buffer) {
+        if (buffer != null && buffer.length > 0 && (spareBuffer == null || buffer.length > spareBuffer.length))
+            spareBuffer = buffer;
+    }
+
+    /**
+     * Moves back to the start of the source.
+     *
+     * @throws IOException if recording has already been stopped
+     */
+    void rewind() throws IOException {
+        if (!recording)
+            throw new IOException("Stream can no longer be rewound");
+
+        position = 0;
+    }
+
+    /**
+     * Stops recording new bytes. Use before the final pass so the rest of the source is streamed
+     * through instead of being buffered.
+     */
+    void stopRecording() {
+        recording = false;
+    }
+
+    /**
+     * Record the rest of the source to the temp file so the whole source can be handed to a decoder that
+     * reads from a file. Recording stops afterwards.
+     *
+     * @return Temp file holding the complete source, deleted on close
+     * @throws IOException if recording has already been stopped
+     */
+    File spoolAll() throws IOException {
+        if (!recording)
+            throw new IOException("Stream can no longer be spooled");
+
+        if (spool == null)
+            spill();
+
+        byte[] chunk = new byte[INITIAL_BUFFER_SIZE];
+        int count;
+        while ((count = source.read(chunk, 0, chunk.length)) != -1) {
+            sourceBytesRead += count;
+            record(chunk, 0, count);
+        }
+
+        recording = false;
+        return spoolFile;
+    }
+
+    /**
+     * @return true if recorded bytes did not fit in memory and were spooled to a temp file
+     */
+    boolean isSpooled() {
+        return spool != null;
+    }
+
+    /**
+     * @return Bytes read from the wrapped source, replays not included
+     */
+    long getSourceBytesRead() {
+        return sourceBytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int count = read(single, 0, 1);
+        return count == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        //Replay recorded bytes first
+        if (position < recorded) {
+            int count = (int) Math.min(len, recorded - position);
+
+            if (spool == null) {
+                System.arraycopy(buffer, (int) position, b, off, count);
+            } else {
+                spool.seek(position);
+                count = spool.read(b, off, count);
+            }
+
+            position += count;
+            return count;
+        }
+
+        int count = source.read(b, off, len);
+
+        if (count > 0) {
+            sourceBytesRead += count;
+
+            if (recording)
+                record(b, off, count);
+
+            position += count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Marks are supported while recording, so readers can sniff the header without buffering it again
+     */
+    @Override
+    public boolean markSupported() {
+        return recording;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (!recording)
+            throw new IOException("Stream can no longer be reset");
+
+        position = mark;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (position < recorded)
+            return (int) Math.min(Integer.MAX_VALUE, recorded - position);
+
+        return source.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            source.close();
+        } finally {
+            releaseBuffer(buffer);
+            buffer = null;
+
+            if (spool != null)
+                spool.close();
+
+            if (spoolFile != null && !spoolFile.delete())
+                spoolFile.deleteOnExit();
+        }
+    }
+
+    private void record(byte[] b, int off, int len) throws IOException {
+        if (spool == null && recorded + len > memoryLimit)
+            spill();
+
+        if (spool != null) {
+            spool.seek(recorded);
+            spool.write(b, off, len);
+        } else {
+            int required = (int) recorded + len;
+            if (required > buffer.length) {
+                byte[] grown = new byte[Math.min(memoryLimit, Math.max(required, Math.max(INITIAL_BUFFER_SIZE, buffer.length * 2)))];
+                System.arraycopy(buffer, 0, grown, 0, (int) recorded);
+                buffer = grown;
+            }
+            System.arraycopy(b, off, buffer, (int) recorded, len);
+        }
+
+        recorded += len;
+    }
+
+    private void spill() throws IOException {
+        spoolFile = File.createTempFile("liv", ".spool", spoolDirectory);
+        spool = new RandomAccessFile(spoolFile, "rw");
+        spool.write(buffer, 0, (int) recorded);
+        releaseBuffer(buffer);
+        buffer = null;
+    }
+}
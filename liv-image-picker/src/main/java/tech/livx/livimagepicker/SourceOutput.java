@@ -0,0 +1,35 @@
+package tech.livx.livimagepicker;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * Output that can take the original source instead of decoded pixels. Used when the source needs no
+ * resample so a rotation can be applied losslessly through the Exif orientation.
+ */
+interface SourceOutput {
+
+    /**
+     * @return true if the untouched source should be used whenever no resample is needed
+     */
+    boolean isSourcePreferred();
+
+    /**
+     * Write the source with the rotation added to its Exif orientation, called on a background thread
+     *
+     * @param resolver Resolver to open the source with
+     * @param uri      Source image Uri
+     * @param rotation User rotation in degrees
+     * @return Result handed to onSourceWritten
+     * @throws Exception on failure
+     */
+    Object writeSource(ContentResolver resolver, Uri uri, int rotation) throws Exception;
+
+    /**
+     * Deliver the result of writeSource, called on the main thread
+     *
+     * @param uri    Source image Uri
+     * @param result Result of writeSource or null on failure
+     */
+    void onSourceWritten(Uri uri, Object result);
+}
@@ -0,0 +1,140 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class BatchDecodeTest {
+    private Context context;
+    private Fixtures.RecordingOutput output;
+    private List<Uri> loaded;
+    private Map<Uri, Throwable> failed;
+    private int completions;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        output = new Fixtures.RecordingOutput();
+        loaded = null;
+        failed = null;
+        completions = 0;
+    }
+
+    @Test
+    public void failuresAreCollectedWithTheirReason() throws Exception {
+        Uri first = register("first.jpg", Fixtures.jpeg(640, 480));
+        Uri broken = registerBroken("broken.jpg");
+        Uri second = register("second.png", Fixtures.png(480, 640));
+
+        run(Arrays.asList(first, broken, second), listener());
+
+        assertEquals(1, completions);
+        assertEquals(Arrays.asList(first, second), loaded);
+        assertEquals(1, failed.size());
+        assertNotNull(failed.get(broken));
+        assertEquals(Arrays.asList(first, second), output.loaded);
+        assertEquals(0, output.failures);
+    }
+
+    @Test
+    public void everyImageFailingStillCompletes() throws Exception {
+        Uri broken = registerBroken("broken.jpg");
+        Uri revoked = registerBroken("revoked.jpg");
+
+        run(Arrays.asList(broken, revoked), listener());
+
+        assertEquals(1, completions);
+        assertTrue(loaded.isEmpty());
+        assertEquals(Arrays.asList(broken, revoked), new ArrayList<>(failed.keySet()));
+    }
+
+    @Test
+    public void emptySelectionCompletesImmediately() {
+        run(new ArrayList<Uri>(), listener());
+
+        assertEquals(1, completions);
+        assertTrue(loaded.isEmpty());
+        assertTrue(failed.isEmpty());
+    }
+
+    @Test
+    public void failuresReachTheOutputWithoutListener() throws Exception {
+        Uri image = register("image.jpg", Fixtures.jpeg(640, 480));
+        Uri broken = registerBroken("broken.jpg");
+
+        run(Arrays.asList(broken, image), null);
+
+        assertEquals(1, output.failures);
+        assertEquals(Arrays.asList(image), output.loaded);
+        assertNull(loaded);
+    }
+
+    @Test
+    public void cancelledBatchDeliversNothing() throws Exception {
+        Uri image = register("image.jpg", Fixtures.jpeg(640, 480));
+        BatchDecode batch = new BatchDecode(new Decoder(context, 200, 200, false), Fixtures.DIRECT,
+                Arrays.asList(image), output, listener(), null);
+
+        batch.start();
+        batch.cancel();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, completions);
+        assertTrue(output.loaded.isEmpty());
+    }
+
+    private void run(List<Uri> uris, BatchListener listener) {
+        new BatchDecode(new Decoder(context, 200, 200, false), Fixtures.DIRECT, uris, output, listener, null).start();
+        ShadowLooper.idleMainLooper();
+    }
+
+    private BatchListener listener() {
+        return new BatchListener() {
+            @Override
+            public void onBatchComplete(List<Uri> loaded, Map<Uri, Throwable> failed) {
+                BatchDecodeTest.this.loaded = loaded;
+                BatchDecodeTest.this.failed = failed;
+                completions++;
+            }
+        };
+    }
+
+    private Uri register(String name, byte[] bytes) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.test/batch/" + name), bytes);
+    }
+
+    /**
+     * Source the app has lost access to, the Robolectric bitmap shadow decodes any bytes it is given
+     */
+    private Uri registerBroken(String name) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.test/batch/" + name), new Supplier<InputStream>() {
+            @Override
+            public InputStream get() {
+                throw new SecurityException("Permission revoked");
+            }
+        });
+    }
+}
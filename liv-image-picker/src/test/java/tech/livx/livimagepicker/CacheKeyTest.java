@@ -0,0 +1,179 @@
+package tech.livx.livimagepicker;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class CacheKeyTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        CacheKey.clear();
+    }
+
+    @Test
+    public void sameSourceAndOutputAreEqual() throws IOException {
+        Uri uri = file("a.jpg", 1000);
+
+        CacheKey first = key(uri, 400, 300, false, 0);
+        CacheKey second = key(uri, 400, 300, false, 0);
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+
+    @Test
+    public void rotationIsNormalised() throws IOException {
+        Uri uri = file("a.jpg", 1000);
+
+        assertEquals(key(uri, 400, 300, false, 90), key(uri, 400, 300, false, 450));
+        assertEquals(key(uri, 400, 300, false, 270), key(uri, 400, 300, false, -90));
+        assertEquals(key(uri, 400, 300, false, 0).withRotation(360), key(uri, 400, 300, false, 0));
+    }
+
+    @Test
+    public void outputParametersAreDistinct() throws IOException {
+        Uri uri = file("a.jpg", 1000);
+        CacheKey key = key(uri, 400, 300, false, 0);
+
+        assertNotEquals(key, key(uri, 300, 400, false, 0));
+        assertNotEquals(key, key(uri, 400, 300, true, 0));
+        assertNotEquals(key, key(uri, 400, 300, false, 90));
+        assertNotEquals(key, CacheKey.create(context, uri, 400, 300, false, 0, 0, Bitmap.Config.RGB_565, null));
+        assertNotEquals(key, key(file("b.jpg", 1000), 400, 300, false, 0));
+        assertNotEquals(key, CacheKey.create(context, uri, 400, 300, false, 200, 0, Bitmap.Config.ARGB_8888, null));
+        assertNotEquals(key, CacheKey.create(context, uri, 400, 300, false, 0, 0, Bitmap.Config.ARGB_8888, ResampleFilter.LANCZOS));
+    }
+
+    @Test
+    public void editedSourceIsDistinct() throws IOException {
+        Uri uri = file("a.jpg", 1000);
+        CacheKey before = key(uri, 400, 300, false, 0);
+
+        file("a.jpg", 2000);
+        CacheKey after = key(uri, 400, 300, false, 0);
+
+        assertNotEquals(before, after);
+        assertFalse(before.isSameSource(after));
+        assertEquals(2000, after.getSize());
+    }
+
+    @Test
+    public void sourceIdentityIgnoresTheOutput() throws IOException {
+        Uri uri = file("a.jpg", 1000);
+        CacheKey small = key(uri, 100, 100, true, 90);
+        CacheKey large = key(uri, 800, 600, false, 0);
+
+        assertTrue(small.isSameSource(large));
+        assertEquals(small.getSignature(), large.getSignature());
+        assertTrue(small.hasSignature());
+        assertTrue(small.isFor(uri));
+    }
+
+    @Test
+    public void withSourceKeepsTheOutput() throws IOException {
+        CacheKey original = key(file("a.jpg", 1000), 400, 300, true, 180);
+        CacheKey duplicate = key(file("b.jpg", 1000), 400, 300, true, 180);
+
+        assertEquals(original, duplicate.withSource(original));
+    }
+
+    @Test
+    public void providerIsQueriedOncePerUri() {
+        CountingProvider provider = Robolectric.setupContentProvider(CountingProvider.class, CountingProvider.AUTHORITY);
+        Uri uri = Uri.parse("content://" + CountingProvider.AUTHORITY + "/image/1");
+
+        CacheKey first = key(uri, 400, 300, false, 0);
+        CacheKey rotated = key(uri, 400, 300, false, 90);
+
+        assertEquals(1, provider.queries);
+        assertEquals(1234, rotated.getSize());
+        assertTrue(first.isSameSource(rotated));
+    }
+
+    private CacheKey key(Uri uri, float width, float height, boolean exact, int rotation) {
+        return CacheKey.create(context, uri, width, height, exact, 0, rotation, Bitmap.Config.ARGB_8888, null);
+    }
+
+    private Uri file(String name, int length) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+
+        return Uri.fromFile(file);
+    }
+
+    public static class CountingProvider extends ContentProvider {
+        static final String AUTHORITY = "tech.livx.test.counting";
+
+        int queries;
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+            queries++;
+            MatrixCursor cursor = new MatrixCursor(new String[]{OpenableColumns.SIZE});
+            cursor.addRow(new Object[]{1234L});
+            return cursor;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return "image/jpeg";
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+}
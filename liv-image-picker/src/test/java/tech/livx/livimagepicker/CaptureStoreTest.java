@@ -0,0 +1,155 @@
+package tech.livx.livimagepicker;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class CaptureStoreTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final int ACTIVITY_REQUEST = 536;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void onlyExpiredCapturesAreDeleted() throws IOException {
+        long now = System.currentTimeMillis();
+        File expired = capture("expired.jpg", now - 25 * HOUR);
+        File recent = capture("recent.jpg", now - HOUR);
+        File restored = capture("restored.jpg", now - 48 * HOUR);
+
+        CaptureStore.deleteExpired(folder.getRoot(), now, restored, null);
+
+        assertFalse(expired.exists());
+        assertTrue(recent.exists());
+        assertTrue(restored.exists());
+    }
+
+    @Test
+    public void capturesOfAnotherPickerSurviveARestart() throws IOException {
+        long now = System.currentTimeMillis();
+        File pending = capture("pending.jpg", now - 10 * 60 * 1000L);
+
+        CaptureStore.deleteExpired(folder.getRoot(), now);
+
+        assertTrue(pending.exists());
+    }
+
+    @Test
+    public void cameraPackagesAreGrantedOncePerCapture() {
+        ShadowPackageManager packageManager = Shadow.extract(context.getPackageManager());
+        packageManager.addResolveInfoForIntent(new Intent(MediaStore.ACTION_IMAGE_CAPTURE), camera("com.camera.one"));
+        packageManager.addResolveInfoForIntent(new Intent(MediaStore.ACTION_IMAGE_CAPTURE), camera("com.camera.two"));
+
+        final List<String> grants = new ArrayList<>();
+        Context counting = new ContextWrapper(context) {
+            @Override
+            public void grantUriPermission(String toPackage, Uri uri, int modeFlags) {
+                grants.add(toPackage);
+            }
+        };
+
+        Uri uri = Uri.parse("content://" + context.getPackageName() + ".livimagepicker.provider/pick/IMG.jpg");
+        Intent[] intents = {new Intent(), new Intent(), new Intent()};
+
+        CaptureStore.grant(counting, uri, intents);
+
+        assertEquals(2, grants.size());
+        for (Intent intent : intents)
+            assertTrue((intent.getFlags() & Intent.FLAG_GRANT_WRITE_URI_PERMISSION) != 0);
+    }
+
+    @Test
+    public void otherUrisAreNotGranted() {
+        Intent intent = new Intent();
+
+        CaptureStore.grant(context, Uri.parse("content://media/external/images/1"), intent);
+
+        assertEquals(0, intent.getFlags());
+    }
+
+    @Test
+    public void deliveredCaptureIsDeleted() throws IOException {
+        Uri uri = Uri.parse("content://" + context.getPackageName() + ".livimagepicker.provider/pick/IMG_delivered.jpg");
+        File file = new File(new File(context.getFilesDir(), "pick"), "IMG_delivered.jpg");
+        assertTrue(file.getParentFile().mkdirs() || file.getParentFile().isDirectory());
+
+        byte[] jpeg = Fixtures.jpeg(800, 600);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(jpeg);
+        } finally {
+            out.close();
+        }
+        Fixtures.register(context, uri, jpeg);
+
+        Fixtures.RecordingOutput output = new Fixtures.RecordingOutput();
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        ImagePicker picker = new ImagePicker(activity, "Captures", output, 400, 400, false);
+        picker.setExecutor(Fixtures.DIRECT);
+
+        picker.onActivityResult(ACTIVITY_REQUEST, Activity.RESULT_OK, new Intent().setData(uri));
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(1, output.loaded.size());
+        assertFalse(file.exists());
+
+        //Rotations render from the kept source
+        picker.rotateImage();
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(2, output.loaded.size());
+        assertEquals(0, output.failures);
+    }
+
+    private File capture(String name, long lastModified) throws IOException {
+        File file = folder.newFile(name);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private static ResolveInfo camera(String packageName) {
+        ResolveInfo info = new ResolveInfo();
+        info.activityInfo = new ActivityInfo();
+        info.activityInfo.packageName = packageName;
+        info.activityInfo.name = packageName + ".Capture";
+        return info;
+    }
+}
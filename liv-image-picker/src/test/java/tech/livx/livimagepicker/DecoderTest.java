@@ -0,0 +1,130 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DecoderTest {
+    private Context context;
+    private int opens;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        opens = 0;
+    }
+
+    @Test
+    public void decodeOpensTheSourceOnce() throws Exception {
+        Uri uri = register("plain.jpg", Fixtures.jpeg(1200, 900));
+
+        Decoded decoded = new Decoder(context, 300, 300, false).decode(uri, 0, null, null, null, null);
+
+        assertNotNull(decoded);
+        assertEquals(1, opens);
+    }
+
+    @Test
+    public void scaledDecodeKeepsTheDisplayDensity() throws Exception {
+        Uri uri = register("scaled.jpg", Fixtures.jpeg(1200, 900));
+
+        Decoded decoded = new Decoder(context, 250, 250, false).decode(uri, 0, null, null, null, null);
+
+        assertEquals(context.getResources().getDisplayMetrics().densityDpi, decoded.source.getDensity());
+        assertEquals(context.getResources().getDisplayMetrics().densityDpi, decoded.dest.getDensity());
+    }
+
+    @Test
+    public void exifSourceOpensTheSourceOnce() throws Exception {
+        Uri uri = register("rotated.jpg", Fixtures.jpeg(1200, 900, PickerMath.ORIENTATION_ROTATE_90));
+
+        Decoded decoded = new Decoder(context, 300, 300, false).decode(uri, 0, null, null, null, null);
+
+        assertNotNull(decoded);
+        assertEquals(1, opens);
+    }
+
+    @Test
+    public void exifOrientationIsReadFromTheStream() throws Exception {
+        byte[] jpeg = Fixtures.jpeg(120, 90, PickerMath.ORIENTATION_ROTATE_90);
+
+        ExifInterface exif = ExifUtil.readExif(new ByteArrayInputStream(jpeg));
+
+        assertEquals(90, ExifUtil.getExifOrientation(exif));
+    }
+
+    @Test
+    public void pngExifOrientationIsRead() throws Exception {
+        Uri uri = register("rotated.png", Fixtures.png(120, 90, PickerMath.ORIENTATION_ROTATE_90));
+        Decoder decoder = new Decoder(context, 300, 300, false);
+
+        ImageMetadata metadata = decoder.getMetadata(uri, decoder.createKey(uri, 0));
+
+        assertEquals("image/png", metadata.mimeType);
+        assertEquals(90, metadata.orientation);
+    }
+
+    @Test
+    public void headerLargerThanTheBufferIsSpooled() throws Exception {
+        byte[] jpeg = Fixtures.padHeader(Fixtures.jpeg(800, 600), Decoder.HEADER_BUFFER_SIZE + 64 * 1024);
+        Uri uri = register("padded.jpg", jpeg);
+
+        Decoded decoded = new Decoder(context, 300, 300, false).decode(uri, 0, null, null, null, null);
+
+        assertNotNull(decoded);
+        assertEquals(1, opens);
+    }
+
+    @Test
+    public void exactCropOpensTheSourceOnce() throws Exception {
+        Uri uri = register("panorama.jpg", Fixtures.jpeg(2400, 600));
+
+        Decoded decoded = new Decoder(context, 200, 200, true).decode(uri, 0, null, null, null, null);
+
+        assertNotNull(decoded);
+        assertEquals(1, opens);
+    }
+
+    @Test
+    public void cachedDecodeDoesNotOpenTheSource() throws Exception {
+        Uri uri = register("cached.jpg", Fixtures.jpeg(1200, 900));
+        Decoder decoder = new Decoder(context, 300, 300, false);
+
+        decoder.decode(uri, 0, null, null, null, null);
+        decoder.decode(uri, 0, null, null, null, null);
+
+        assertEquals(1, opens);
+    }
+
+    /**
+     * Serve the bytes and count how often the source is opened
+     */
+    private Uri register(String name, final byte[] bytes) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.test/" + name), new Supplier<InputStream>() {
+            @Override
+            public InputStream get() {
+                opens++;
+                return new ByteArrayInputStream(bytes);
+            }
+        });
+    }
+}
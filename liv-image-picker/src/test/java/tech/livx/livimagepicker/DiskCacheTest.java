@@ -0,0 +1,71 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class DiskCacheTest {
+    private Context context;
+    private DiskCache cache;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        cache = DiskCache.getInstance(context);
+    }
+
+    @Test
+    public void imageRecycledByTheAppIsStillWritten() throws InterruptedException {
+        CacheKey key = key("recycled.jpg", Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+
+        cache.put(key, bitmap, null);
+        bitmap.recycle();
+
+        assertNotNull(await(key));
+    }
+
+    @Test
+    public void imageIsReadInTheFormatOfTheKey() throws InterruptedException {
+        CacheKey key = key("opaque.jpg", Bitmap.Config.RGB_565);
+
+        cache.put(key, Bitmap.createBitmap(40, 30, Bitmap.Config.RGB_565), null);
+
+        assertEquals(Bitmap.Config.RGB_565, await(key).bitmap.getConfig());
+    }
+
+    @Test
+    public void fingerprintIsStoredWithTheImage() throws InterruptedException {
+        CacheKey key = key("fingerprinted.jpg", Bitmap.Config.ARGB_8888);
+
+        cache.put(key, Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888), "cafe");
+
+        assertEquals("cafe", await(key).fingerprint);
+    }
+
+    private CacheKey key(String name, Bitmap.Config config) {
+        Uri uri = Uri.parse("content://tech.livx.test/disk/" + name);
+        return CacheKey.create(context, uri, 400, 300, false, 0, 0, config, null);
+    }
+
+    private DiskCache.Entry await(CacheKey key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        DiskCache.Entry entry;
+        while ((entry = cache.get(key)) == null && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        return entry;
+    }
+}
@@ -0,0 +1,144 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class FingerprintTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        Fingerprint.clear();
+    }
+
+    @Test
+    public void decodeRecordsTheFingerprint() throws Exception {
+        Uri uri = file("photo.jpg", Fixtures.jpeg(800, 600));
+
+        Decoded decoded = new Decoder(context, 300, 300, false).decode(uri, 0, null, null, null, null);
+
+        assertNotNull(decoded.fingerprint);
+        assertEquals(decoded.fingerprint, ImagePicker.getFingerprint(uri));
+    }
+
+    @Test
+    public void memoryHitCarriesTheFingerprint() throws Exception {
+        Uri uri = file("photo.jpg", Fixtures.jpeg(800, 600));
+        Decoder decoder = new Decoder(context, 300, 300, false);
+        Decoded first = decoder.decode(uri, 0, null, null, null, null);
+
+        Decoded second = decoder.decode(uri, 0, null, null, null, null);
+
+        assertSame(first.dest, second.dest);
+        assertEquals(first.fingerprint, second.fingerprint);
+    }
+
+    @Test
+    public void diskHitKeepsTheFingerprintWithoutTheSource() throws Exception {
+        Uri uri = file("photo.jpg", Fixtures.jpeg(800, 600));
+        Decoder decoder = new Decoder(context, 300, 300, false);
+        decoder.setDiskCacheEnabled(true);
+        Decoded first = decoder.decode(uri, 0, null, null, null, null);
+        awaitDiskCache(first.key);
+
+        //As after process death, with a source that is slow or gone by now
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        Fingerprint.clear();
+        Fixtures.register(context, uri, new Supplier<InputStream>() {
+            @Override
+            public InputStream get() {
+                throw new AssertionError("Source opened on a disk cache hit");
+            }
+        });
+
+        Decoded second = decoder.decode(uri, 0, null, null, null, null);
+
+        //Served from disk, nothing was decoded from the source
+        assertNull(second.source);
+        assertNotNull(second.dest);
+        assertEquals(first.fingerprint, second.fingerprint);
+        assertEquals(first.fingerprint, ImagePicker.getFingerprint(uri));
+    }
+
+    @Test
+    public void headerReadRecordsTheFingerprint() throws Exception {
+        Uri uri = file("photo.jpg", Fixtures.jpeg(800, 600));
+        Decoder decoder = new Decoder(context, 1000, 1000, false);
+
+        //Pass through and lazy outputs only read the header
+        ImageMetadata metadata = decoder.getMetadata(uri, decoder.createKey(uri, 0));
+
+        assertNotNull(metadata.fingerprint);
+        assertEquals(metadata.fingerprint, ImagePicker.getFingerprint(uri));
+    }
+
+    @Test
+    public void sameContentMatchesAcrossUris() throws Exception {
+        byte[] jpeg = Fixtures.jpeg(800, 600, PickerMath.ORIENTATION_ROTATE_90);
+        Decoder decoder = new Decoder(context, 300, 300, false);
+
+        Decoded first = decoder.decode(file("first.jpg", jpeg), 0, null, null, null, null);
+        Decoded second = decoder.decode(file("second.jpg", jpeg), 0, null, null, null, null);
+
+        assertEquals(first.fingerprint, second.fingerprint);
+    }
+
+    @Test
+    public void resultsCarryTheFingerprint() throws Exception {
+        Bitmap bitmap = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+
+        assertEquals("cafe", OutputSized.encode(bitmap, Bitmap.CompressFormat.JPEG, 100000, "cafe").getFingerprint());
+        assertEquals("cafe", OutputRenditions.render(bitmap, new Rendition("thumb", 20, 20, true), "cafe").getFingerprint());
+    }
+
+    private void awaitDiskCache(CacheKey key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (DiskCache.getInstance(context).get(key) == null && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+    }
+
+    /**
+     * File Uri so the source has a size and modification time to key the metadata with
+     */
+    private Uri file(String name, byte[] bytes) throws IOException {
+        File file = folder.newFile(name);
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(bytes);
+        } finally {
+            stream.close();
+        }
+
+        return Fixtures.register(context, Uri.fromFile(file), bytes);
+    }
+}
@@ -0,0 +1,210 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Test images generated on the JVM, so no binaries are needed for the unit tests, and the helpers the
+ * tests share to serve them
+ */
+final class Fixtures {
+    //Runs background work inline so a test sees the result straight away
+    static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return JPEG of the given size without Exif
+     */
+    static byte[] jpeg(int width, int height) throws IOException {
+        return write(width, height, "jpg");
+    }
+
+    /**
+     * @return PNG of the given size
+     */
+    static byte[] png(int width, int height) throws IOException {
+        return write(width, height, "png");
+    }
+
+    /**
+     * @param orientation Exif orientation tag value
+     * @return JPEG of the given size with an Exif block holding the orientation
+     */
+    static byte[] jpeg(int width, int height, int orientation) throws IOException {
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        segment.write(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        segment.write(tiff(orientation));
+
+        return insertSegment(jpeg(width, height), 0xE1, segment.toByteArray());
+    }
+
+    /**
+     * @param orientation Exif orientation tag value
+     * @return PNG of the given size with an eXIf chunk holding the orientation
+     */
+    static byte[] png(int width, int height, int orientation) throws IOException {
+        byte[] png = png(width, height);
+        byte[] tiff = tiff(orientation);
+
+        CRC32 crc = new CRC32();
+        crc.update(new byte[]{'e', 'X', 'I', 'f'});
+        crc.update(tiff);
+
+        //Signature and IHDR, the chunk goes right after
+        int header = 8 + 25;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(png.length + tiff.length + 12);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(png, 0, header);
+        out.writeInt(tiff.length);
+        out.writeBytes("eXIf");
+        out.write(tiff);
+        out.writeInt((int) crc.getValue());
+        out.write(png, header, png.length - header);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] tiff(int orientation) {
+        return new byte[]{
+                'M', 'M', 0, 42, 0, 0, 0, 8,
+                //One entry: orientation, SHORT, count 1
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                //No next IFD
+                0, 0, 0, 0
+        };
+    }
+
+    /**
+     * Add comment segments after the start of image so the header grows by about the given size
+     */
+    static byte[] padHeader(byte[] jpeg, int bytes) {
+        byte[] comment = new byte[60000];
+        while (bytes > 0) {
+            jpeg = insertSegment(jpeg, 0xFE, comment);
+            bytes -= comment.length;
+        }
+
+        return jpeg;
+    }
+
+    private static byte[] insertSegment(byte[] jpeg, int marker, byte[] payload) {
+        int length = payload.length + 2;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(jpeg.length + length + 2);
+        //Start of image
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(payload, 0, payload.length);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static byte[] write(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out))
+            throw new IOException("No writer for " + format);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Serve bytes through the content resolver under the given Uri, each open gets a fresh stream
+     */
+    static Uri register(Context context, Uri uri, final byte[] bytes) {
+        return register(context, uri, new Supplier<InputStream>() {
+            @Override
+            public InputStream get() {
+                return new ByteArrayInputStream(bytes);
+            }
+        });
+    }
+
+    /**
+     * Serve a file through the content resolver under the given Uri
+     */
+    static Uri register(Context context, Uri uri, final File file) {
+        return register(context, uri, new Supplier<InputStream>() {
+            @Override
+            public InputStream get() {
+                try {
+                    return new FileInputStream(file);
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Serve whatever the supplier opens through the content resolver under the given Uri
+     */
+    static Uri register(Context context, Uri uri, Supplier<InputStream> supplier) {
+        ShadowContentResolver resolver = Shadow.extract(context.getContentResolver());
+        resolver.registerInputStreamSupplier(uri, supplier);
+        return uri;
+    }
+
+    /**
+     * Bitmap output keeping what it was handed
+     */
+    static class RecordingOutput extends OutputBitmap {
+        final List<Uri> loaded = new ArrayList<>();
+        final List<Bitmap> images = new ArrayList<>();
+        int failures;
+
+        @Override
+        public void onImageLoaded(Uri uri, Bitmap image) {
+            loaded.add(uri);
+            images.add(image);
+        }
+
+        @Override
+        public void onImageLoadFailed() {
+            failures++;
+        }
+
+        @Override
+        public void onPermissionsDenied() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Base64;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class OutputBase64Test {
+    private static final Uri URI = Uri.parse("content://tech.livx.test/image.jpg");
+
+    private RecordingBase64 output;
+
+    @Before
+    public void setUp() {
+        output = new RecordingBase64();
+        output.setExecutor(Fixtures.DIRECT);
+    }
+
+    @Test
+    public void encodesTheCompressedImage() {
+        Bitmap bitmap = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+        output.setCompressFormat(Bitmap.CompressFormat.JPEG, 80);
+
+        output.process(URI, bitmap);
+        ShadowLooper.idleMainLooper();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, expected);
+
+        assertEquals(1, output.loaded);
+        assertEquals(0, output.failures);
+        assertArrayEquals(expected.toByteArray(), Base64.decode(output.image, Base64.NO_WRAP));
+    }
+
+    @Test
+    public void missingBitmapFails() {
+        output.process(URI, null);
+        ShadowLooper.idleMainLooper();
+
+        assertEquals(0, output.loaded);
+        assertEquals(1, output.failures);
+    }
+
+    @Test
+    public void rotationsArriveInOrderOnAPool() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        output.setExecutor(pool);
+
+        //Successive rotations of one pick, the last handed over must be the last delivered
+        List<String> expected = new ArrayList<>();
+        try {
+            for (int i = 1; i <= 30; i++) {
+                Bitmap bitmap = Bitmap.createBitmap(i % 2 == 0 ? 40 * i : 30, i % 2 == 0 ? 30 : 40 * i, Bitmap.Config.ARGB_8888);
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                bitmap.compress(output.getCompressFormat(), output.getQuality(), compressed);
+                expected.add(Base64.encodeToString(compressed.toByteArray(), Base64.NO_WRAP));
+                output.process(URI, bitmap);
+            }
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (output.loaded < 30 && System.currentTimeMillis() < deadline) {
+                ShadowLooper.idleMainLooper();
+                Thread.sleep(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, output.failures);
+        assertEquals(expected, output.images);
+    }
+
+    private static class RecordingBase64 extends OutputBase64 {
+        String image;
+        final List<String> images = new ArrayList<>();
+        int loaded;
+        int failures;
+
+        @Override
+        public void onImageLoaded(Uri uri, String image) {
+            this.image = image;
+            images.add(image);
+            loaded++;
+        }
+
+        @Override
+        public void onImageLoadFailed() {
+            failures++;
+        }
+
+        @Override
+        public void onPermissionsDenied() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class OutputRenditionsTest {
+    private static final Uri URI = Uri.parse("content://tech.livx.test/renditions.jpg");
+
+    @Before
+    public void setUp() {
+        BitmapCache.getInstance().clear();
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void fitRenditionsSizeTheBox() {
+        OutputRenditions renditions = renditions(new Rendition("wide", 800, 450, false),
+                new Rendition("tall", 300, 600, false));
+
+        assertEquals(800, renditions.getMaxWidth(), 0);
+        assertEquals(600, renditions.getMaxHeight(), 0);
+        assertEquals(0, renditions.getMinSide(), 0);
+    }
+
+    @Test
+    public void exactRenditionsKeepTheirLargestSide() {
+        OutputRenditions renditions = renditions(new Rendition("banner", 640, 200, true),
+                new Rendition("avatar", 300, 300, true), new Rendition("full", 1024, 1024, false));
+
+        assertEquals(1024, renditions.getMaxWidth(), 0);
+        assertEquals(1024, renditions.getMaxHeight(), 0);
+        assertEquals(640, renditions.getMinSide(), 0);
+    }
+
+    @Test
+    public void exactRenditionsAreNeverUpscaledFromTheSharedDecode() {
+        OutputRenditions renditions = renditions(new Rendition("avatar", 500, 500, true),
+                new Rendition("full", 800, 800, false));
+        int[][] sources = {{4000, 3000}, {3000, 4000}, {6000, 1000}, {1000, 6000}};
+
+        for (int[] source : sources) {
+            int[] decode = PickerMath.getTargetSize(source[0], source[1], renditions.getMaxWidth(),
+                    renditions.getMaxHeight(), renditions.getMinSide());
+
+            float scale = PickerMath.getCoverScale(decode[0], decode[1], 500, 500);
+            assertEquals("Source " + source[0] + "x" + source[1], 1f, Math.max(1f, scale), 0.001f);
+        }
+    }
+
+    @Test
+    public void decodeIsPooledAfterTheLastRendition() {
+        Bitmap decode = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+
+        render(decode);
+
+        assertSame(decode, BitmapPool.getInstance().getReusable(400, 300, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void cachedDecodeIsKept() {
+        Bitmap decode = Bitmap.createBitmap(400, 300, Bitmap.Config.ARGB_8888);
+        CacheKey key = CacheKey.create(RuntimeEnvironment.application, URI, 400, 400, false, 0, 0, Bitmap.Config.ARGB_8888, null);
+        BitmapCache.getInstance().put(key, decode);
+
+        render(decode);
+
+        assertNotSame(decode, BitmapPool.getInstance().getReusable(400, 300, Bitmap.Config.ARGB_8888));
+        assertSame(decode, BitmapCache.getInstance().get(key));
+    }
+
+    private static void render(Bitmap decode) {
+        OutputRenditions renditions = renditions(
+                new Rendition("thumb", 100, 100, true).setCompressFormat(Bitmap.CompressFormat.JPEG, 80),
+                new Rendition("full", 400, 400, false).setCompressFormat(Bitmap.CompressFormat.PNG, 100));
+        renditions.setExecutor(Fixtures.DIRECT);
+
+        renditions.process(URI, decode);
+        ShadowLooper.idleMainLooper();
+    }
+
+    private static OutputRenditions renditions(Rendition... renditions) {
+        return new OutputRenditions(renditions) {
+            @Override
+            public void onImageLoaded(Uri uri, List<Rendition.Image> image) {
+            }
+
+            @Override
+            public void onImageLoadFailed() {
+            }
+
+            @Override
+            public void onPermissionsDenied() {
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class OutputSinkTest {
+    private static final Uri URI = Uri.parse("content://tech.livx.test/image.jpg");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() {
+        bitmap = Bitmap.createBitmap(40, 30, Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void streamIsWrittenOnce() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        RecordingSink sink = new RecordingSink(stream);
+
+        deliver(sink, 2);
+
+        assertEquals(1, sink.loaded);
+        assertEquals(1, sink.failures);
+        assertEquals(sink.result.getByteCount(), stream.size());
+    }
+
+    @Test
+    public void channelIsWrittenOnce() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        RecordingSink sink = new RecordingSink(Channels.newChannel(stream));
+
+        deliver(sink, 3);
+
+        assertEquals(1, sink.loaded);
+        assertEquals(2, sink.failures);
+        assertEquals(sink.result.getByteCount(), stream.size());
+    }
+
+    @Test
+    public void fileIsRewrittenEachTime() {
+        File file = new File(folder.getRoot(), "image.jpg");
+        RecordingSink sink = new RecordingSink(file);
+
+        deliver(sink, 2);
+
+        assertEquals(2, sink.loaded);
+        assertEquals(0, sink.failures);
+        assertTrue(file.length() > 0);
+        assertEquals(sink.result.getByteCount(), file.length());
+    }
+
+    @Test
+    public void concurrentWritesLeaveTheLatestImage() throws Exception {
+        File file = new File(folder.getRoot(), "image.jpg");
+        RecordingSink sink = new RecordingSink(file);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        sink.setExecutor(pool);
+
+        //Rotations and batch images arrive faster than they are written, each one a different size
+        List<Long> sizes = new ArrayList<>();
+        Bitmap last = null;
+        try {
+            for (int i = 1; i <= 40; i++) {
+                last = Bitmap.createBitmap(40 * i, 30, Bitmap.Config.ARGB_8888);
+                sizes.add((long) compress(last).length);
+                sink.process(URI, last);
+            }
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (sink.loaded < 40 && System.currentTimeMillis() < deadline) {
+                ShadowLooper.idleMainLooper();
+                Thread.sleep(1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(40, sink.loaded);
+        assertEquals(0, sink.failures);
+        assertEquals(sizes, sink.byteCounts);
+        assertArrayEquals(compress(last), Files.readAllBytes(file.toPath()));
+    }
+
+    private static byte[] compress(Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, stream);
+        return stream.toByteArray();
+    }
+
+    private void deliver(OutputSink sink, int times) {
+        for (int i = 0; i < times; i++) {
+            sink.process(URI, bitmap);
+            ShadowLooper.idleMainLooper();
+        }
+    }
+
+    private static class RecordingSink extends OutputSink {
+        Result result;
+        final List<Long> byteCounts = new ArrayList<>();
+        int loaded;
+        int failures;
+
+        RecordingSink(File file) {
+            super(file);
+            setExecutor(Fixtures.DIRECT);
+        }
+
+        RecordingSink(OutputStream stream) {
+            super(stream);
+            setExecutor(Fixtures.DIRECT);
+        }
+
+        RecordingSink(WritableByteChannel channel) {
+            super(channel);
+            setExecutor(Fixtures.DIRECT);
+        }
+
+        @Override
+        public void onImageLoaded(Uri uri, Result result) {
+            this.result = result;
+            byteCounts.add(result.getByteCount());
+            loaded++;
+        }
+
+        @Override
+        public void onImageLoadFailed() {
+            failures++;
+        }
+
+        @Override
+        public void onPermissionsDenied() {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package tech.livx.livimagepicker;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OutputSizedTest {
+
+    @Test
+    public void findsTheHighestQualityThatFits() throws Exception {
+        for (int maxBytes = 1000; maxBytes <= 12000; maxBytes += 137) {
+            FakeSearch search = new FakeSearch(maxBytes, 100);
+            search.run();
+
+            int expected = Math.min(95, maxBytes / 100);
+            assertEquals("Budget " + maxBytes, expected, search.bestQuality);
+        }
+    }
+
+    @Test
+    public void nothingFitsBelowTheLowestQuality() throws Exception {
+        FakeSearch search = new FakeSearch(999, 100);
+        search.run();
+
+        assertNull(search.best);
+        assertEquals(-1, search.bestQuality);
+    }
+
+    @Test
+    public void searchNeedsFarFewerPassesThanAScan() throws Exception {
+        for (int maxBytes = 1000; maxBytes <= 9500; maxBytes += 250) {
+            FakeSearch search = new FakeSearch(maxBytes, 100);
+            search.run();
+
+            assertEquals(search.passes, search.encoded.size());
+            assertTrue("Budget " + maxBytes + " took " + search.passes, search.passes <= 15);
+        }
+    }
+
+    @Test
+    public void candidatesAreNeverEncodedTwice() throws Exception {
+        FakeSearch search = new FakeSearch(4321, 100);
+        search.run();
+
+        assertEquals(search.passes, new HashSet<>(search.encoded).size());
+    }
+
+    /**
+     * Search over a fake encoder whose output grows linearly with quality
+     */
+    private static class FakeSearch extends OutputSized.Search {
+        private final int bytesPerQuality;
+        final List<Integer> encoded = Collections.synchronizedList(new ArrayList<Integer>());
+
+        FakeSearch(int maxBytes, int bytesPerQuality) {
+            super(null, null, maxBytes);
+            this.bytesPerQuality = bytesPerQuality;
+        }
+
+        @Override
+        boolean compress(int quality, OutputStream stream) {
+            encoded.add(quality);
+            try {
+                stream.write(new byte[quality * bytesPerQuality]);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package tech.livx.livimagepicker;
+
+import android.content.Context;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * End to end pick benchmark over the fixture corpus in src/test/resources/corpus, every format, size class
+ * and Exif orientation. Skipped unless asked for:
+ * ./gradlew :liv-image-picker:testDebugUnitTest --tests '*PickBenchmarkTest' -Pbenchmark
+ * <p>
+ * Robolectric doesn't decode pixels, so the numbers cover the pipeline around the native decoder: opening
+ * the source, the header and Exif passes, fingerprinting, sizing and the transform. Each pick starts with
+ * empty caches. Results are printed and, with -Dlivimagepicker.benchmark.report=file, written as CSV to
+ * compare against a baseline from the same machine.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class PickBenchmarkTest {
+    private static final String[] FORMATS = {"jpeg", "png", "webp"};
+
+    private Context context;
+    private int warmup;
+    private int picks;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("livimagepicker.benchmark"));
+
+        context = RuntimeEnvironment.application;
+        warmup = Integer.getInteger("livimagepicker.benchmark.warmup", 5);
+        picks = Integer.getInteger("livimagepicker.benchmark.picks", 20);
+    }
+
+    @Test
+    public void pickCorpus() throws Exception {
+        File corpus = new File(getClass().getClassLoader().getResource("corpus").toURI());
+        Decoder decoder = new Decoder(context, 1080, 1080, false);
+        List<Row> rows = new ArrayList<>();
+
+        for (String format : FORMATS) {
+            File[] files = new File(corpus, format).listFiles();
+            assertNotNull("Missing corpus for " + format, files);
+            Arrays.sort(files);
+
+            //Eight orientations in three size classes
+            assertEquals(24, files.length);
+
+            for (File file : files) {
+                Uri uri = register(format, file);
+
+                for (int i = 0; i < warmup; i++)
+                    pick(decoder, uri);
+
+                long bytes = getAllocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < picks; i++)
+                    pick(decoder, uri);
+
+                rows.add(new Row(format + "/" + file.getName(), file.length(), (System.nanoTime() - start) / picks,
+                        (getAllocatedBytes() - bytes) / picks));
+            }
+        }
+
+        report(rows);
+    }
+
+    private static void pick(Decoder decoder, Uri uri) throws Exception {
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+
+        Decoded decoded = decoder.decode(uri, 0, null, null, null, null);
+        assertNotNull("Failed to pick " + uri, decoded);
+    }
+
+    private Uri register(String format, File file) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.benchmark/" + format + "/" + file.getName()), file);
+    }
+
+    /**
+     * @return Bytes allocated by this thread so far, the whole pick runs on it
+     */
+    private static long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void report(List<Row> rows) throws IOException {
+        StringBuilder table = new StringBuilder(String.format(Locale.US, "%-22s %10s %10s %10s %12s%n",
+                "fixture", "size KB", "picks/s", "ms/pick", "alloc KB/pick"));
+        StringBuilder csv = new StringBuilder("fixture,bytes,nanos_per_pick,allocated_bytes_per_pick\n");
+
+        for (Row row : rows) {
+            table.append(String.format(Locale.US, "%-22s %10d %10.1f %10.3f %12d%n", row.name, row.size / 1024,
+                    1e9 / row.nanos, row.nanos / 1e6, row.allocated / 1024));
+            csv.append(row.name).append(',').append(row.size).append(',').append(row.nanos).append(',')
+                    .append(row.allocated).append('\n');
+        }
+
+        System.out.print(table);
+
+        String path = System.getProperty("livimagepicker.benchmark.report");
+        if (path != null) {
+            FileWriter writer = new FileWriter(path);
+            try {
+                writer.write(csv.toString());
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private static class Row {
+        final String name;
+        final long size;
+        final long nanos;
+        final long allocated;
+
+        Row(String name, long size, long nanos, long allocated) {
+            this.name = name;
+            this.size = size;
+            this.nanos = nanos;
+            this.allocated = allocated;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package tech.livx.livimagepicker;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class PickMetricsTest {
+    private static final int ACTIVITY_REQUEST = 536;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+    private final List<PickMetrics> reported = new ArrayList<>();
+    private final MetricsListener listener = new MetricsListener() {
+        @Override
+        public void onPickMetrics(PickMetrics metrics) {
+            reported.add(metrics);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        BitmapCache.getInstance().clear();
+        ImageMetadata.clear();
+        Fingerprint.clear();
+    }
+
+    @Test
+    public void passThroughIsReported() throws Exception {
+        Uri uri = register("small.jpg", Fixtures.jpeg(400, 300));
+        OutputSink sink = new OutputSink(new File(folder.getRoot(), "out.jpg")) {
+            @Override
+            public void onImageLoaded(Uri uri, Result image) {
+            }
+
+            @Override
+            public void onImageLoadFailed() {
+            }
+
+            @Override
+            public void onPermissionsDenied() {
+            }
+        };
+        sink.setLosslessRotation(true);
+
+        pick(sink, uri);
+
+        PickMetrics metrics = single();
+        assertEquals(0, metrics.getStageNanos(PickMetrics.Stage.DECODE));
+        assertEquals(400, metrics.getSourceWidth());
+        assertNotNull(metrics.getFingerprint());
+    }
+
+    @Test
+    public void lazyHandleIsReported() throws Exception {
+        Uri uri = register("lazy.jpg", Fixtures.jpeg(1600, 1200));
+        OutputLazy lazy = new OutputLazy() {
+            @Override
+            public void onImageLoaded(Uri uri, ImageHandle image) {
+            }
+
+            @Override
+            public void onImageLoadFailed() {
+            }
+
+            @Override
+            public void onPermissionsDenied() {
+            }
+        };
+
+        pick(lazy, uri);
+
+        PickMetrics metrics = single();
+        assertEquals(0, metrics.getStageNanos(PickMetrics.Stage.DECODE));
+        assertEquals(1600, metrics.getSourceWidth());
+        assertTrue(metrics.getStageNanos(PickMetrics.Stage.BOUNDS) > 0);
+    }
+
+    @Test
+    public void duplicateRecordsNoDecode() throws Exception {
+        byte[] jpeg = Fixtures.jpeg(1600, 1200);
+        Decoder decoder = new Decoder(context, 300, 300, false);
+        decoder.decode(register("first.jpg", jpeg), 0, null, null, null, null);
+
+        PickMetrics metrics = new PickMetrics(Uri.EMPTY, listener);
+        Decoded decoded = decoder.decode(register("second.jpg", jpeg), 0, null, null, null, metrics);
+
+        assertNotNull(decoded.dest);
+        assertEquals(PickMetrics.CacheResult.MEMORY, metrics.getCacheResult());
+        assertEquals(0, metrics.getStageNanos(PickMetrics.Stage.DECODE));
+    }
+
+    private void pick(Output output, Uri uri) {
+        Activity activity = Robolectric.buildActivity(Activity.class).create().get();
+        ImagePicker picker = new ImagePicker(activity, "Metrics", output, 1080, 1080, false);
+        picker.setExecutor(Fixtures.DIRECT);
+        picker.setMetricsListener(listener);
+
+        picker.onActivityResult(ACTIVITY_REQUEST, Activity.RESULT_OK, new Intent().setData(uri));
+        ShadowLooper.idleMainLooper();
+    }
+
+    private PickMetrics single() {
+        assertEquals(1, reported.size());
+        return reported.get(0);
+    }
+
+    private Uri register(String name, byte[] bytes) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.test/metrics/" + name), bytes);
+    }
+}
@@ -0,0 +1,108 @@
+package tech.livx.livimagepicker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PickerMathTest {
+
+    @Test
+    public void rotationIsNormalised() {
+        assertEquals(0, PickerMath.normalizeRotation(360));
+        assertEquals(90, PickerMath.normalizeRotation(450));
+        assertEquals(270, PickerMath.normalizeRotation(-90));
+        assertTrue(PickerMath.isTurned(-270));
+        assertFalse(PickerMath.isTurned(540));
+    }
+
+    @Test
+    public void orientationRoundTrips() {
+        for (int degrees = 0; degrees < 360; degrees += 90)
+            assertEquals(degrees, PickerMath.getOrientationDegrees(PickerMath.getOrientation(degrees)));
+
+        //Mirrored orientations carry no plain rotation
+        assertEquals(0, PickerMath.getOrientationDegrees(2));
+        assertFalse(PickerMath.isPlainRotation(5));
+        assertTrue(PickerMath.isPlainRotation(0));
+    }
+
+    @Test
+    public void targetSizeFitsOrCovers() {
+        assertArrayEquals(new int[]{400, 300}, PickerMath.getTargetSize(4000, 3000, 400, 400, false));
+        assertArrayEquals(new int[]{533, 400}, PickerMath.getTargetSize(4000, 3000, 400, 400, true));
+        assertArrayEquals(new int[]{300, 400}, PickerMath.getTargetSize(3000, 4000, 400, 400, false));
+        assertArrayEquals(new int[]{1, 100}, PickerMath.getTargetSize(10, 10000, 1000, 100, false));
+    }
+
+    @Test
+    public void targetSizeNeverUpscales() {
+        assertArrayEquals(new int[]{200, 100}, PickerMath.getTargetSize(200, 100, 800, 800, false));
+        assertArrayEquals(new int[]{200, 100}, PickerMath.getTargetSize(200, 100, 800, 800, true));
+    }
+
+    @Test
+    public void minSideKeepsTheShortSideCovered() {
+        //A square exact rendition of 400 next to a 600 box fit
+        assertArrayEquals(new int[]{800, 400}, PickerMath.getTargetSize(2000, 1000, 600, 600, 400));
+        assertArrayEquals(new int[]{400, 800}, PickerMath.getTargetSize(1000, 2000, 600, 600, 400));
+        assertArrayEquals(new int[]{600, 450}, PickerMath.getTargetSize(4000, 3000, 600, 600, 400));
+        assertArrayEquals(new int[]{600, 300}, PickerMath.getTargetSize(2000, 1000, 600, 600, 0));
+    }
+
+    @Test
+    public void minSideNeverUpscales() {
+        assertArrayEquals(new int[]{500, 300}, PickerMath.getTargetSize(500, 300, 600, 600, 400));
+    }
+
+    @Test
+    public void sampleSizeKeepsTheTargetCovered() {
+        assertEquals(1, PickerMath.getSampleSize(1000, 1000, 600, 600));
+        assertEquals(2, PickerMath.getSampleSize(1000, 1000, 500, 500));
+        assertEquals(4, PickerMath.getSampleSize(4000, 3000, 800, 600));
+        assertEquals(8, PickerMath.getSampleSize(4000, 3000, 500, 300));
+    }
+
+    @Test
+    public void sampleSizeIsBoundByTheTighterSide() {
+        //A panorama sampled to a square target keeps its short side covered
+        assertEquals(2, PickerMath.getSampleSize(8000, 1000, 400, 400));
+        assertEquals(1, PickerMath.getSampleSize(100, 100, 400, 400));
+    }
+
+    @Test
+    public void cropRegionIsCentredWithTheTargetAspect() {
+        assertArrayEquals(new int[]{750, 0, 2250, 1500}, PickerMath.getCropRegion(3000, 1500, 200, 200));
+        assertArrayEquals(new int[]{0, 1000, 1000, 2000}, PickerMath.getCropRegion(1000, 3000, 400, 400));
+        assertArrayEquals(new int[]{0, 375, 4000, 2625}, PickerMath.getCropRegion(4000, 3000, 1600, 900));
+    }
+
+    @Test
+    public void cropRegionStaysInsideTheFrame() {
+        int[][] sizes = {{4000, 3000}, {3000, 4000}, {1, 5000}, {5000, 1}, {4095, 17}};
+        float[][] targets = {{1, 1}, {16, 9}, {9, 16}, {1000, 1}, {1, 1000}};
+
+        for (int[] size : sizes) {
+            for (float[] target : targets) {
+                int[] region = PickerMath.getCropRegion(size[0], size[1], target[0], target[1]);
+                if (region == null)
+                    continue;
+
+                assertTrue(region[0] >= 0 && region[1] >= 0);
+                assertTrue(region[2] <= size[0] && region[3] <= size[1]);
+                assertTrue(region[2] > region[0] && region[3] > region[1]);
+            }
+        }
+    }
+
+    @Test
+    public void nearlyFullCropIsSkipped() {
+        assertNull(PickerMath.getCropRegion(1000, 1000, 300, 300));
+        assertNull(PickerMath.getCropRegion(1000, 950, 300, 300));
+        assertNull(PickerMath.getCropRegion(0, 1000, 300, 300));
+        assertNull(PickerMath.getCropRegion(1000, 1000, 0, 300));
+    }
+}
@@ -0,0 +1,219 @@
+package tech.livx.livimagepicker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResampleKernelTest {
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final float[] SCALES = {0.1f, 0.37f, 0.5f, 1f, 1.6f, 3f};
+
+    @Test
+    public void weightsSumToOne() {
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            for (float scale : SCALES) {
+                int length = Math.max(1, Math.round(100 * scale));
+                ResampleKernel.Weights weights = new ResampleKernel.Weights(filter, 100, length, scale, 0);
+
+                for (int i = 0; i < length; i++) {
+                    float total = 0;
+                    for (int j = 0; j < weights.count[i]; j++)
+                        total += weights.weights[i * weights.stride + j];
+
+                    assertEquals(filter + " at " + scale, 1f, total, 1e-4f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void weightsStayInsideTheSource() {
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            for (float scale : SCALES) {
+                int length = Math.max(1, Math.round(100 * scale));
+                ResampleKernel.Weights weights = new ResampleKernel.Weights(filter, 100, length, scale, 0);
+
+                for (int i = 0; i < length; i++) {
+                    assertTrue(weights.start[i] >= 0);
+                    assertTrue(weights.count[i] >= 1 && weights.count[i] <= weights.stride);
+                    assertTrue(weights.start[i] + weights.count[i] <= 100);
+                }
+
+                assertTrue(weights.min >= 0 && weights.max <= 100 && weights.min < weights.max);
+            }
+        }
+    }
+
+    @Test
+    public void cropOffsetOnlyReadsTheWindow() {
+        //A 200 wide source cropped to its middle 100 at scale 1
+        ResampleKernel.Weights weights = new ResampleKernel.Weights(ResampleFilter.BOX, 200, 100, 1f, 50);
+
+        assertEquals(50, weights.min);
+        assertEquals(150, weights.max);
+    }
+
+    @Test
+    public void constantImageStaysConstant() throws InterruptedException {
+        int color = 0x80336699;
+
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            for (float scale : SCALES) {
+                for (int rotation : ROTATIONS) {
+                    int[] output = resample(fill(new int[40 * 30], color), 40, 30, scale, filter, rotation, Fixtures.DIRECT, 1);
+
+                    for (int pixel : output)
+                        assertEquals(filter + " at " + scale + ", " + rotation, color, pixel);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unscaledPassIsTheIdentity() throws InterruptedException {
+        int[] pixels = gradient(37, 23);
+
+        for (ResampleFilter filter : ResampleFilter.values())
+            assertArrayEquals(filter.toString(), pixels, resample(pixels, 37, 23, 1f, filter, 0, Fixtures.DIRECT, 1));
+    }
+
+    @Test
+    public void boxHalvesByAveraging() throws InterruptedException {
+        int[] pixels = {
+                0xff000000, 0xff0000ff, 0xff00ff00, 0xff00ff00,
+                0xff000000, 0xff0000ff, 0xff00ff00, 0xff00ff00
+        };
+
+        int[] output = resample(pixels, 4, 2, 0.5f, ResampleFilter.BOX, 0, Fixtures.DIRECT, 1);
+
+        assertArrayEquals(new int[]{0xff000080, 0xff00ff00}, output);
+    }
+
+    @Test
+    public void transparentNeighboursDontDarkenEdges() throws InterruptedException {
+        //White next to transparent black, the color of a transparent pixel must not bleed in
+        int[] pixels = {
+                0x00000000, 0xffffffff,
+                0x00000000, 0xffffffff
+        };
+
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            int[] output = resample(pixels, 2, 2, 0.5f, filter, 0, Fixtures.DIRECT, 1);
+
+            assertEquals(filter.toString(), 0x80ffffff, output[0]);
+        }
+    }
+
+    @Test
+    public void rotationsAreClockwise() throws InterruptedException {
+        //1 2 3
+        //4 5 6, opaque so the colors survive premultiplication
+        int[] pixels = opaque(1, 2, 3, 4, 5, 6);
+
+        assertArrayEquals(opaque(4, 1, 5, 2, 6, 3), resample(pixels, 3, 2, 1f, ResampleFilter.BOX, 90, Fixtures.DIRECT, 1));
+        assertArrayEquals(opaque(6, 5, 4, 3, 2, 1), resample(pixels, 3, 2, 1f, ResampleFilter.BOX, 180, Fixtures.DIRECT, 1));
+        assertArrayEquals(opaque(3, 6, 2, 5, 1, 4), resample(pixels, 3, 2, 1f, ResampleFilter.BOX, 270, Fixtures.DIRECT, 1));
+    }
+
+    @Test
+    public void indexMapsEveryPixelOnce() {
+        int width = 7;
+        int height = 4;
+
+        for (int rotation : ROTATIONS) {
+            boolean[] seen = new boolean[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int index = ResampleKernel.getIndex(x, y, width, height, rotation);
+                    assertTrue("Index taken twice at " + rotation, !seen[index]);
+                    seen[index] = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotatingFourTimesRestoresTheImage() throws InterruptedException {
+        int[] pixels = gradient(9, 5);
+
+        int[] turned = resample(pixels, 9, 5, 1f, ResampleFilter.BOX, 90, Fixtures.DIRECT, 1);
+        turned = resample(turned, 5, 9, 1f, ResampleFilter.BOX, 90, Fixtures.DIRECT, 1);
+        turned = resample(turned, 9, 5, 1f, ResampleFilter.BOX, 90, Fixtures.DIRECT, 1);
+        turned = resample(turned, 5, 9, 1f, ResampleFilter.BOX, 90, Fixtures.DIRECT, 1);
+
+        assertArrayEquals(pixels, turned);
+    }
+
+    @Test
+    public void stripesMatchASingleThread() throws InterruptedException {
+        int[] pixels = gradient(400, 300);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            for (int rotation : ROTATIONS) {
+                int[] single = resample(pixels, 400, 300, 0.37f, ResampleFilter.LANCZOS, rotation, Fixtures.DIRECT, 1);
+                int[] striped = resample(pixels, 400, 300, 0.37f, ResampleFilter.LANCZOS, rotation, pool, 4);
+
+                assertArrayEquals(single, striped);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void stripeFailuresReachTheCaller() throws InterruptedException {
+        ResampleKernel.Weights columns = new ResampleKernel.Weights(ResampleFilter.BOX, 64, 64, 1f, 0);
+        ResampleKernel.Weights rows = new ResampleKernel.Weights(ResampleFilter.BOX, 64, 64, 1f, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            //Too few pixels for the weights, the stripes past the first row fail
+            ResampleKernel.resample(new int[64], 64, columns, rows, 0, pool, 4);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int[] resample(int[] pixels, int width, int height, float scale, ResampleFilter filter,
+                                  int rotation, Executor helpers, int threads) throws InterruptedException {
+        int outWidth = Math.max(1, Math.round(width * scale));
+        int outHeight = Math.max(1, Math.round(height * scale));
+
+        ResampleKernel.Weights columns = new ResampleKernel.Weights(filter, width, outWidth, scale, 0);
+        ResampleKernel.Weights rows = new ResampleKernel.Weights(filter, height, outHeight, scale, 0);
+
+        //Only the rows under the kernel are handed over, like Resampler does
+        int[] band = new int[width * (rows.max - rows.min)];
+        System.arraycopy(pixels, rows.min * width, band, 0, band.length);
+
+        return ResampleKernel.resample(band, width, columns, rows, rotation, helpers, threads);
+    }
+
+    private static int[] opaque(int... colors) {
+        for (int i = 0; i < colors.length; i++)
+            colors[i] |= 0xff000000;
+
+        return colors;
+    }
+
+    private static int[] fill(int[] pixels, int color) {
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                pixels[y * width + x] = 0xff000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x + y) & 0xff);
+        }
+
+        return pixels;
+    }
+}
@@ -0,0 +1,63 @@
+package tech.livx.livimagepicker;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ResamplerTest {
+
+    @Before
+    public void setUp() {
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void unchangedSourceIsReturnedAsIs() throws InterruptedException {
+        Bitmap source = Bitmap.createBitmap(100, 80, Bitmap.Config.ARGB_8888);
+
+        assertSame(source, Resampler.transform(source, 200, 200, false, 0, ResampleFilter.LANCZOS));
+        assertSame(source, Resampler.transform(source, 100, 80, true, 360, ResampleFilter.BOX));
+    }
+
+    @Test
+    public void emptyTargetGivesNothing() throws InterruptedException {
+        Bitmap source = Bitmap.createBitmap(100, 80, Bitmap.Config.ARGB_8888);
+
+        assertNull(Resampler.transform(source, 0, 80, true, 0, ResampleFilter.BOX));
+    }
+
+    @Test
+    public void exactOutputIsTurnedAfterCropping() throws InterruptedException {
+        Bitmap source = Bitmap.createBitmap(200, 100, Bitmap.Config.ARGB_8888);
+
+        Bitmap dest = Resampler.transform(source, 60, 40, true, 90, ResampleFilter.BILINEAR);
+
+        assertEquals(40, dest.getWidth());
+        assertEquals(60, dest.getHeight());
+    }
+
+    @Test
+    public void pixelsAreRotatedClockwise() throws InterruptedException {
+        Bitmap source = Bitmap.createBitmap(2, 1, Bitmap.Config.ARGB_8888);
+        source.setPixels(new int[]{Color.RED, Color.BLUE}, 0, 2, 0, 0, 2, 1);
+
+        Bitmap dest = Resampler.transform(source, 2, 1, false, 270, ResampleFilter.BOX);
+
+        int[] pixels = new int[2];
+        dest.getPixels(pixels, 0, 1, 0, 0, 1, 2);
+        assertEquals(1, dest.getWidth());
+        assertArrayEquals(new int[]{Color.BLUE, Color.RED}, pixels);
+    }
+}
@@ -0,0 +1,155 @@
+package tech.livx.livimagepicker;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RewindableInputStreamTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rewindReplaysRecordedBytes() throws IOException {
+        byte[] source = bytes(10000);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 64 * 1024, folder.getRoot());
+
+        byte[] head = new byte[4000];
+        assertEquals(4000, readFully(input, head));
+
+        input.rewind();
+        assertArrayEquals(source, readAll(input));
+        assertFalse(input.isSpooled());
+        assertEquals(source.length, input.getSourceBytesRead());
+        input.close();
+    }
+
+    @Test
+    public void recordsPastTheLimitAreSpooled() throws IOException {
+        byte[] source = bytes(100000);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 16 * 1024, folder.getRoot());
+
+        readAll(input);
+        assertTrue(input.isSpooled());
+        assertEquals(1, folder.getRoot().list().length);
+
+        input.rewind();
+        assertArrayEquals(source, readAll(input));
+        assertEquals(source.length, input.getSourceBytesRead());
+
+        input.close();
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void stoppedRecordingStreamsTheRest() throws IOException {
+        byte[] source = bytes(50000);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 64 * 1024, folder.getRoot());
+
+        readFully(input, new byte[1000]);
+        input.rewind();
+        input.stopRecording();
+
+        assertArrayEquals(source, readAll(input));
+        input.close();
+    }
+
+    @Test
+    public void spoolAllWritesTheWholeSource() throws IOException {
+        byte[] source = bytes(100000);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 64 * 1024, folder.getRoot());
+
+        readFully(input, new byte[2000]);
+        input.rewind();
+        File spooled = input.spoolAll();
+
+        assertArrayEquals(source, readAll(new FileInputStream(spooled)));
+        assertEquals(source.length, input.getSourceBytesRead());
+
+        input.close();
+        assertFalse(spooled.exists());
+    }
+
+    @Test
+    public void resetReturnsToTheMark() throws IOException {
+        byte[] source = bytes(5000);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 1024, folder.getRoot());
+
+        readFully(input, new byte[100]);
+        input.mark(16);
+        byte[] first = new byte[2000];
+        readFully(input, first);
+
+        input.reset();
+        byte[] second = new byte[2000];
+        readFully(input, second);
+
+        assertTrue(input.markSupported());
+        assertArrayEquals(first, second);
+        assertEquals(source[100], first[0]);
+
+        input.stopRecording();
+        assertFalse(input.markSupported());
+        input.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void rewindFailsOnceRecordingStopped() throws IOException {
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(bytes(10)), 1024, folder.getRoot());
+        input.stopRecording();
+        input.rewind();
+    }
+
+    @Test
+    public void singleByteReadsMatchTheSource() throws IOException {
+        byte[] source = bytes(300);
+        RewindableInputStream input = new RewindableInputStream(new ByteArrayInputStream(source), 1024, folder.getRoot());
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(source[i] & 0xff, input.read());
+
+        input.rewind();
+        for (byte b : source)
+            assertEquals(b & 0xff, input.read());
+        assertEquals(-1, input.read());
+        input.close();
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte) (i * 31 + i / 256);
+
+        return bytes;
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        int count;
+        while (length < buffer.length && (count = input.read(buffer, length, buffer.length - length)) != -1)
+            length += count;
+
+        return length;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[3000];
+        int count;
+        while ((count = input.read(buffer)) != -1)
+            out.write(buffer, 0, count);
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,211 @@
+package tech.livx.livimagepicker;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Repeats pick, rotate, save and restore cycles the way an Activity goes through them, on the default
+ * executor, and fails when memory, Activities, Bitmaps or threads pile up across cycles. Runs a short soak
+ * by default, longer ones with e.g. -Dlivimagepicker.soak.cycles=500.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SoakTest {
+    private static final int ACTIVITY_REQUEST = 536;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    //Picks cycle through a few sources so the caches fill up during the warmup and then stay put
+    private static final int SOURCES = 4;
+
+    private Context context;
+    private final List<Uri> sources = new ArrayList<>();
+    private final List<WeakReference<Activity>> activities = new ArrayList<>();
+    private final List<WeakReference<Bitmap>> bitmaps = new ArrayList<>();
+
+    private int warmup;
+    private int cycles;
+    private long maxBytesPerCycle;
+    private int maxExtraThreads;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.application;
+        BitmapCache.getInstance().clear();
+        BitmapPool.getInstance().clear();
+        ImageMetadata.clear();
+
+        warmup = Integer.getInteger("livimagepicker.soak.warmup", 10);
+        cycles = Integer.getInteger("livimagepicker.soak.cycles", 40);
+        maxBytesPerCycle = Long.getLong("livimagepicker.soak.maxBytesPerCycle", 64 * 1024);
+        maxExtraThreads = Integer.getInteger("livimagepicker.soak.maxExtraThreads", 0);
+
+        for (int i = 0; i < SOURCES; i++)
+            sources.add(register("soak" + i + ".jpg", Fixtures.jpeg(1600 + i * 16, 1200, i % 2 == 0 ? 1 : 6)));
+    }
+
+    @Test
+    public void pickRotateRestoreDoesNotAccumulate() throws Exception {
+        for (int i = 0; i < warmup; i++)
+            cycle(i);
+
+        long baselineHeap = getUsedHeap();
+        int baselineThreads = Thread.activeCount();
+        long highWater = baselineHeap;
+        int maxThreads = baselineThreads;
+
+        for (int i = 0; i < cycles; i++) {
+            cycle(warmup + i);
+
+            highWater = Math.max(highWater, getRuntimeUsed());
+            maxThreads = Math.max(maxThreads, Thread.activeCount());
+        }
+
+        long finalHeap = getUsedHeap();
+        int finalThreads = Thread.activeCount();
+        long bytesPerCycle = Math.max(0, finalHeap - baselineHeap) / Math.max(1, cycles);
+
+        System.out.println(String.format(Locale.US, "Soak: %d cycles, heap %d KB -> %d KB (high water %d KB, %d B/cycle), threads %d -> %d (max %d)",
+                cycles, baselineHeap / 1024, finalHeap / 1024, highWater / 1024, bytesPerCycle, baselineThreads, finalThreads, maxThreads));
+
+        assertTrue("Heap grew by " + bytesPerCycle + " bytes per cycle", bytesPerCycle <= maxBytesPerCycle);
+        assertTrue("Threads grew from " + baselineThreads + " to " + finalThreads, finalThreads <= baselineThreads + maxExtraThreads);
+
+        //Robolectric holds on to the last Activity created until the next one
+        Robolectric.buildActivity(SoakActivity.class).create().destroy();
+        assertEquals("Leaked Activities", 0, countAlive(activities));
+
+        //Whatever the caches legitimately hold goes, after that nothing may keep a delivered image alive
+        BitmapCache.getInstance().clear();
+        BitmapPool.getInstance().clear();
+        assertEquals("Leaked Bitmaps", 0, countAlive(bitmaps));
+    }
+
+    /**
+     * Pick, rotate and save in one Activity, then restore in its replacement and finish it
+     */
+    private void cycle(int index) throws Exception {
+        Fixtures.RecordingOutput output = new Fixtures.RecordingOutput();
+
+        //Not made visible, Robolectric never lets go of attached windows
+        ActivityController<SoakActivity> first = Robolectric.buildActivity(SoakActivity.class).create().start().resume();
+        ImagePicker picker = new ImagePicker(first.get(), "Soak", output, 1080, 1080, false);
+        picker.onCreate(null);
+
+        picker.onActivityResult(ACTIVITY_REQUEST, Activity.RESULT_OK, new Intent().setData(sources.get(index % SOURCES)));
+        await(output, 1);
+
+        picker.rotateImage();
+        await(output, 2);
+
+        //Configuration change: the picker state survives, the Activity and picker don't
+        Bundle state = new Bundle();
+        picker.onSavedInstanceState(state);
+        picker.onDestroy();
+        first.pause().stop().destroy();
+        activities.add(new WeakReference<Activity>(first.get()));
+
+        ActivityController<SoakActivity> second = Robolectric.buildActivity(SoakActivity.class).create().start().resume();
+        picker = new ImagePicker(second.get(), "Soak", output, 1080, 1080, false);
+        picker.onCreate(state);
+        await(output, 3);
+
+        second.get().finish();
+        picker.onDestroy();
+        second.pause().stop().destroy();
+        activities.add(new WeakReference<Activity>(second.get()));
+
+        for (Bitmap bitmap : output.images)
+            bitmaps.add(new WeakReference<>(bitmap));
+    }
+
+    /**
+     * Run the main looper until the output got the given number of images
+     */
+    private static void await(Fixtures.RecordingOutput output, int images) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (output.images.size() < images) {
+            if (output.failures > 0)
+                fail("Image failed to load");
+
+            if (System.currentTimeMillis() > deadline)
+                fail("Timed out waiting for image " + images);
+
+            ShadowLooper.idleMainLooper();
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * @return Heap in use once garbage has been collected
+     */
+    private static long getUsedHeap() {
+        collectGarbage();
+        return getRuntimeUsed();
+    }
+
+    private static long getRuntimeUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void collectGarbage() {
+        //A single request may be ignored, keep going until a fresh object has actually been collected
+        for (int i = 0; i < 3; i++) {
+            WeakReference<Object> sentinel = new WeakReference<>(new Object());
+            while (sentinel.get() != null) {
+                System.gc();
+                System.runFinalization();
+            }
+        }
+    }
+
+    private static <T> int countAlive(List<WeakReference<T>> references) {
+        collectGarbage();
+
+        int alive = 0;
+        for (WeakReference<T> reference : references) {
+            if (reference.get() != null)
+                alive++;
+        }
+
+        return alive;
+    }
+
+    private Uri register(String name, byte[] bytes) {
+        return Fixtures.register(context, Uri.parse("content://tech.livx.test/" + name), bytes);
+    }
+
+    /**
+     * Activity without an action bar, whose vector icons Robolectric keeps for good
+     */
+    public static class SoakActivity extends Activity {
+        @Override
+        protected void onCreate(Bundle savedInstanceState) {
+            setTheme(android.R.style.Theme_Black_NoTitleBar);
+            super.onCreate(savedInstanceState);
+        }
+    }
+}